@@ -0,0 +1,237 @@
+package org.Smart.ExpenseSplitter.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop HTTP load driver used to compare the thread-per-request and the virtual-thread serving modes.
+ * Every worker owns a group and repeatedly reads its detail, scrolls its expenses or adds an expense,
+ * the operation mix is drawn from a seeded random so two runs issue the same request sequence.
+ * <p>
+ * Start the application once per mode against the same database, then run
+ * {@code ./gradlew servingBenchmark -Pserving.label=platform} and
+ * {@code ./gradlew servingBenchmark -Pserving.label=virtual} (the latter with {@code --spring.profiles.active=virtual-threads}).
+ * Each run prints the throughput and the latency percentiles of the measurement window, the warmup is discarded.
+ */
+public class ServingModeBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final URI baseUri;
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration measurement;
+    private final long seed;
+    private final HttpClient client;
+
+    ServingModeBenchmark(URI baseUri, int concurrency, Duration warmup, Duration measurement, long seed) {
+        this.baseUri = baseUri;
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+        this.measurement = measurement;
+        this.seed = seed;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Arguments: base URL, label, concurrency, warmup seconds, measurement seconds, seed.
+     */
+    public static void main(String[] args) throws Exception {
+        URI baseUri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        String label = args.length > 1 ? args[1] : "default";
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Duration warmup = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 15);
+        Duration measurement = Duration.ofSeconds(args.length > 4 ? Long.parseLong(args[4]) : 60);
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+
+        Result result = new ServingModeBenchmark(baseUri, concurrency, warmup, measurement, seed).run();
+        System.out.println(result.report(label, concurrency, measurement));
+    }
+
+    Result run() throws Exception {
+        String token = register("bench-" + seed + "-" + System.currentTimeMillis());
+
+        long userId = 0;
+        long[] groupIds = new long[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            JsonNode group = createGroup(token, "bench-" + i);
+            groupIds[i] = group.path("id").asLong();
+            userId = group.path("creator").path("id").asLong();
+        }
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + measurement.toNanos();
+
+        List<Future<Worker>> futures = new ArrayList<>(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                Worker worker = new Worker(token, userId, groupIds[i], new SplittableRandom(seed + i));
+                futures.add(executor.submit(() -> worker.run(measureFrom, measureUntil)));
+            }
+        }
+
+        Result result = new Result();
+        for (Future<Worker> future : futures) {
+            result.merge(future.get());
+        }
+        return result;
+    }
+
+    private final class Worker {
+
+        private final String token;
+        private final long userId;
+        private final long groupId;
+        private final SplittableRandom random;
+
+        private long[] latencies = new long[1 << 12];
+        private int count;
+        private long errors;
+
+        Worker(String token, long userId, long groupId, SplittableRandom random) {
+            this.token = token;
+            this.userId = userId;
+            this.groupId = groupId;
+            this.random = random;
+        }
+
+        Worker run(long measureFrom, long measureUntil) {
+            long now;
+            while ((now = System.nanoTime()) < measureUntil) {
+                HttpRequest request = nextRequest();
+                boolean ok;
+                try {
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    ok = status < 400;
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                long end = System.nanoTime();
+                if (now >= measureFrom) {
+                    record(end - now);
+                    if (!ok) errors++;
+                }
+            }
+            return this;
+        }
+
+        // 60% group detail, 25% expense scroll, 15% new expense
+        private HttpRequest nextRequest() {
+            int roll = random.nextInt(100);
+            if (roll < 60) {
+                return get("/api/v1/groups/" + groupId);
+            }
+            if (roll < 85) {
+                return get("/api/v1/expenses/group/" + groupId + "/scroll?size=20");
+            }
+            String body = json(Map.of(
+                    "description", "bench",
+                    "amount", random.nextInt(1, 10_000) / 100.0,
+                    "expenseType", "FOOD",
+                    "payerId", userId,
+                    "participantIds", List.of(userId)));
+            return authorized("/api/v1/expenses/group/" + groupId + "/create")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private HttpRequest get(String path) {
+            return authorized(path).GET().build();
+        }
+
+        private HttpRequest.Builder authorized(String path) {
+            return HttpRequest.newBuilder(baseUri.resolve(path)).header("Authorization", "Bearer " + token);
+        }
+
+        private void record(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+    }
+
+    static final class Result {
+
+        private long[] latencies = new long[0];
+        private long errors;
+
+        void merge(Worker worker) {
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + worker.count);
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            errors += worker.errors;
+        }
+
+        String report(String label, int concurrency, Duration measurement) {
+            Arrays.sort(latencies);
+            double throughput = latencies.length / (double) measurement.toSeconds();
+            return String.format(
+                    "%s: concurrency=%d requests=%d errors=%d throughput=%.1f req/s p50=%.2f ms p90=%.2f ms p99=%.2f ms p99.9=%.2f ms max=%.2f ms",
+                    label, concurrency, latencies.length, errors, throughput,
+                    percentile(0.50), percentile(0.90), percentile(0.99), percentile(0.999), percentile(1.0));
+        }
+
+        private double percentile(double p) {
+            if (latencies.length == 0) return 0;
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1);
+            return latencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+
+    private String register(String username) throws IOException, InterruptedException {
+        String body = json(Map.of("username", username, "email", username + "@bench.local", "password", "bench"));
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/v1/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return send(request).path("data").path("token").asText();
+    }
+
+    private JsonNode createGroup(String token, String name) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/v1/groups/create?name=" + name))
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return send(request).path("data");
+    }
+
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return MAPPER.readTree(response.body());
+    }
+
+    private static String json(Object value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.Smart.ExpenseSplitter.service;
+
+import org.Smart.ExpenseSplitter.entity.BalanceEntity;
+import org.Smart.ExpenseSplitter.handler.SettlementEngine;
+import org.Smart.ExpenseSplitter.handler.SettlementPlan;
+import org.Smart.ExpenseSplitter.handler.Transaction;
+import org.Smart.ExpenseSplitter.util.MoneyUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the netting of pairwise balances and the greedy debt simplification in {@link BalanceService}
+ * and {@link SettlementEngine}.
+ * Run with {@code ./gradlew jmh}; the gc profiler and the sample mode (for p99) are configured in build.gradle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DebtSimplificationBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int members;
+
+    @Param({"UNIFORM", "PARETO", "SINGLE_CREDITOR", "FEW_CREDITORS"})
+    public SyntheticGroup.Distribution distribution;
+
+    @Param({"42"})
+    public long seed;
+
+    private List<BalanceEntity> balances;
+    private Map<Long, BigDecimal> netBalances;
+    private long[] netCents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        balances = SyntheticGroup.balances(members, distribution, seed);
+        netBalances = BalanceService.netBalances(balances);
+        netCents = netBalances.values().stream().mapToLong(MoneyUtils::toCents).toArray();
+    }
+
+    @Benchmark
+    public Map<Long, BigDecimal> netting() {
+        return BalanceService.netBalances(balances);
+    }
+
+    @Benchmark
+    public List<Transaction> simplification() {
+        return BalanceService.simplifyDebts(netBalances);
+    }
+
+    // Settlement alone, without the conversion to and from Transaction objects
+    @Benchmark
+    public SettlementPlan settlementEngine() {
+        return SettlementEngine.settle(netCents);
+    }
+}
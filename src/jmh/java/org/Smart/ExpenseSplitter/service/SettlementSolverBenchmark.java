@@ -0,0 +1,59 @@
+package org.Smart.ExpenseSplitter.service;
+
+import org.Smart.ExpenseSplitter.handler.ExactSettlementSolver;
+import org.Smart.ExpenseSplitter.handler.SettlementEngine;
+import org.Smart.ExpenseSplitter.handler.SettlementPlan;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the exact minimum-transfer solver with the greedy settlement on small groups.
+ * Net positions come from expenses with a few common amounts, as in real groups, so zero-sum subsets exist.
+ * Only the time of each is measured here; ExactSettlementSolverTest checks the transfer counts on the same groups.
+ * Run with {@code ./gradlew jmh -Pjmh.includes=SettlementSolverBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SettlementSolverBenchmark {
+
+    private static final long[] AMOUNTS = {500, 1000, 1500, 2000, 2500, 5000};
+
+    @Param({"6", "10", "14", "18", "20"})
+    public int members;
+
+    @Param({"42"})
+    public long seed;
+
+    private long[] netCents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(seed);
+        netCents = new long[members];
+        for (int i = 0; i < members * 2; i++) {
+            int from = random.nextInt(members);
+            int to = random.nextInt(members);
+            if (from == to) continue;
+
+            long amount = AMOUNTS[random.nextInt(AMOUNTS.length)];
+            netCents[from] -= amount;
+            netCents[to] += amount;
+        }
+    }
+
+    @Benchmark
+    public SettlementPlan greedy() {
+        return SettlementEngine.settle(netCents);
+    }
+
+    @Benchmark
+    public SettlementPlan exact() {
+        return ExactSettlementSolver.solve(netCents, members, Long.MAX_VALUE / 2);
+    }
+}
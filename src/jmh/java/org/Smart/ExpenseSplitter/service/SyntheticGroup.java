@@ -0,0 +1,76 @@
+package org.Smart.ExpenseSplitter.service;
+
+import org.Smart.ExpenseSplitter.entity.BalanceEntity;
+import org.Smart.ExpenseSplitter.entity.BalanceId;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded synthetic group used as benchmark input.
+ * The same (members, distribution, seed) triple always produces the same balances.
+ */
+final class SyntheticGroup {
+
+    static final long GROUP_ID = 1L;
+
+    /**
+     * How debts are spread across the members of a synthetic group.
+     */
+    enum Distribution {
+        // Every member owes a random member a uniformly drawn amount
+        UNIFORM,
+        // Amounts follow a Pareto distribution, a few members carry most of the debt
+        PARETO,
+        // Every member owes the same single creditor
+        SINGLE_CREDITOR,
+        // A small pool of creditors (1% of the group) is owed by everyone else
+        FEW_CREDITORS
+    }
+
+    private SyntheticGroup() {
+    }
+
+    /**
+     * Generates one pairwise balance per member.
+     *
+     * @param members      number of members in the group
+     * @param distribution how debts are spread
+     * @param seed         random seed
+     * @return the pairwise balances of the group
+     */
+    static List<BalanceEntity> balances(int members, Distribution distribution, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<BalanceEntity> balances = new ArrayList<>(members);
+        int creditorPool = Math.max(1, members / 100);
+
+        for (int i = 0; i < members; i++) {
+            long from = i + 1L;
+            long to = switch (distribution) {
+                case UNIFORM, PARETO -> 1L + random.nextInt(members);
+                case SINGLE_CREDITOR -> 1L;
+                case FEW_CREDITORS -> 1L + random.nextInt(creditorPool);
+            };
+            if (to == from) {
+                to = from % members + 1;
+            }
+            if (to == from) {
+                continue;
+            }
+
+            long cents = switch (distribution) {
+                case PARETO -> Math.min(10_000_000L, (long) (100 / Math.pow(1 - random.nextDouble(), 1 / 1.16)));
+                default -> 1 + random.nextLong(100_000L);
+            };
+
+            BalanceEntity balance = new BalanceEntity();
+            balance.setId(new BalanceId(GROUP_ID, from, to));
+            balance.setAmount(BigDecimal.valueOf(cents, 2));
+            balances.add(balance);
+        }
+
+        return balances;
+    }
+}
@@ -0,0 +1,62 @@
+package org.Smart.ExpenseSplitter.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves the pooled ID generators of id_generators past the IDs already in use.
+ * Tables that used auto-increment IDs before the generators were introduced would otherwise
+ * receive IDs that collide with existing rows. Runs once the schema has been updated.
+ * <p>
+ * The pooled optimizer reads a stored value as the highest ID of its first block, and hands out
+ * the block below it, so the value is seeded a whole block past the highest ID in use.
+ */
+@Component
+class IdGeneratorInitializer {
+
+    // Must match the allocationSize of the @TableGenerator of every entity below
+    static final int ALLOCATION_SIZE = 50;
+
+    // Generator name -> table whose IDs it hands out
+    private static final Map<String, String> GENERATORS = Map.of(
+            "expenses", "expenses",
+            "groups", "`groups`",
+            "users", "users",
+            "ledger_events", "ledger_events",
+            "ledger_snapshots", "ledger_snapshots"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // The EntityManagerFactory dependency makes this run after Hibernate created the generator table
+    IdGeneratorInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void initialize() {
+        GENERATORS.forEach(this::seed);
+    }
+
+    private void seed(String name, String table) {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+        long nextId = maxId + ALLOCATION_SIZE;
+
+        // Never moves a generator back, another instance may already have handed out higher IDs
+        int updated = jdbcTemplate.update(
+                "update id_generators set next_id = greatest(next_id, ?) where name = ?", nextId, name);
+        if (updated > 0) return;
+
+        try {
+            jdbcTemplate.update("insert into id_generators (name, next_id) values (?, ?)", name, nextId);
+        } catch (DuplicateKeyException e) {
+            // Another instance inserted the row first
+            jdbcTemplate.update("update id_generators set next_id = greatest(next_id, ?) where name = ?", nextId, name);
+        }
+    }
+}
@@ -10,4 +10,5 @@ import org.springframework.stereotype.Component;
 public class JwtProperties {
     private String secret;
     private long expiration;
+    private long cacheSize = 10_000; // Maximum number of verified tokens kept in memory
 }
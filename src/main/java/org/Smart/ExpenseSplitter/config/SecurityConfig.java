@@ -2,7 +2,6 @@ package org.Smart.ExpenseSplitter.config;
 
 import lombok.RequiredArgsConstructor;
 import org.Smart.ExpenseSplitter.handler.CustomAccessDeniedHandler;
-import org.Smart.ExpenseSplitter.service.AuthService;
 import org.Smart.ExpenseSplitter.service.JwtAuthenticationEntryPoint;
 import org.Smart.ExpenseSplitter.service.JwtAuthenticationFilter;
 import org.Smart.ExpenseSplitter.service.JwtService;
@@ -28,7 +27,6 @@ class SecurityConfig {
 
     private final JwtService jwtTokenProvider;
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
-    private final AuthService userService;
     private final CustomAccessDeniedHandler customAccessDeniedHandler;
 
     @Bean
@@ -38,6 +36,7 @@ class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/v1/auth/**").permitAll() // Allow unauthenticated access to these paths
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll() // Allow access to Swagger UI and API docs
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll() // Served on the loopback management port only
                         .anyRequest().authenticated() // Secure all other paths
                 )
                 .exceptionHandling(
@@ -54,7 +53,7 @@ class SecurityConfig {
     }
 
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(jwtTokenProvider, userService);
+        return new JwtAuthenticationFilter(jwtTokenProvider);
     }
 
     @Bean
@@ -64,7 +64,7 @@ public class AuthController {
                             new UsernamePasswordAuthenticationToken(
                                     existingUser.getUsername(), authRequestDTO.getPassword()));
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                    String accessToken = tokenProvider.generateToken(authentication);
+                    String accessToken = tokenProvider.generateToken(authentication, existingUser.getId());
                     JwtTokenResponseDTO tokenResponse = new JwtTokenResponseDTO(accessToken);
 
                     return ResponseEntity.ok(new JsonResponse(true, "Login successful", tokenResponse));
@@ -87,7 +87,7 @@ public class AuthController {
                     new UsernamePasswordAuthenticationToken(
                             newUser.getUsername(), authRequestDTO.getPassword()));
             SecurityContextHolder.getContext().setAuthentication(authentication);
-            String accessToken = tokenProvider.generateToken(authentication);
+            String accessToken = tokenProvider.generateToken(authentication, newUser.getId());
             JwtTokenResponseDTO tokenResponse = new JwtTokenResponseDTO(accessToken);
 
             return ResponseEntity.status(HttpStatus.CREATED)
@@ -1,25 +1,46 @@
 package org.Smart.ExpenseSplitter.controller;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.Smart.ExpenseSplitter.dto.CursorPageDTO;
 import org.Smart.ExpenseSplitter.dto.JsonResponse;
 import org.Smart.ExpenseSplitter.dto.balance.BalanceRequestDTO;
 import org.Smart.ExpenseSplitter.dto.balance.BalanceResponseDTO;
+import org.Smart.ExpenseSplitter.dto.balance.BulkSettlementRequestDTO;
+import org.Smart.ExpenseSplitter.dto.balance.BulkSettlementResultDTO;
+import org.Smart.ExpenseSplitter.dto.balance.NetPositionDTO;
+import org.Smart.ExpenseSplitter.dto.balance.PairwiseNetDTO;
+import org.Smart.ExpenseSplitter.dto.balance.PairwiseNetDetailDTO;
+import org.Smart.ExpenseSplitter.dto.balance.UserBalanceSummaryDTO;
 import org.Smart.ExpenseSplitter.entity.BalanceEntity;
-import org.Smart.ExpenseSplitter.entity.UserEntity;
+import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
 import org.Smart.ExpenseSplitter.exception.UserNotFoundException;
+import org.Smart.ExpenseSplitter.handler.DebtPlan;
 import org.Smart.ExpenseSplitter.service.AuthService;
 import org.Smart.ExpenseSplitter.service.BalanceService;
+import org.Smart.ExpenseSplitter.service.BalanceSummaryService;
+import org.Smart.ExpenseSplitter.service.BulkSettlementService;
+import org.Smart.ExpenseSplitter.service.ConditionalGetService;
+import org.Smart.ExpenseSplitter.service.DebtOptimizationScheduler;
+import org.Smart.ExpenseSplitter.service.IdempotencyService;
+import org.Smart.ExpenseSplitter.service.LedgerService;
+import org.Smart.ExpenseSplitter.service.PairwiseNettingService;
 import org.apache.coyote.BadRequestException;
 import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.util.List;
+
 @RestController
 @RequestMapping("/balances")
 @Validated
@@ -28,34 +49,182 @@ public class BalanceController {
 
     private final BalanceService balanceService;
     private final AuthService userService;
+    private final DebtOptimizationScheduler debtOptimizationScheduler;
+    private final LedgerService ledgerService;
+    private final BalanceSummaryService balanceSummaryService;
+    private final PairwiseNettingService pairwiseNettingService;
+    private final BulkSettlementService bulkSettlementService;
+    private final IdempotencyService idempotencyService;
+    private final ConditionalGetService conditionalGetService;
 
-    public BalanceController(BalanceService balanceService, AuthService userService) {
+    public BalanceController(BalanceService balanceService, AuthService userService,
+                             DebtOptimizationScheduler debtOptimizationScheduler, LedgerService ledgerService,
+                             BalanceSummaryService balanceSummaryService, PairwiseNettingService pairwiseNettingService,
+                             BulkSettlementService bulkSettlementService, IdempotencyService idempotencyService,
+                             ConditionalGetService conditionalGetService) {
         this.balanceService = balanceService;
         this.userService = userService;
+        this.debtOptimizationScheduler = debtOptimizationScheduler;
+        this.ledgerService = ledgerService;
+        this.balanceSummaryService = balanceSummaryService;
+        this.pairwiseNettingService = pairwiseNettingService;
+        this.bulkSettlementService = bulkSettlementService;
+        this.idempotencyService = idempotencyService;
+        this.conditionalGetService = conditionalGetService;
     }
 
+    // Answers 304 Not Modified while the If-None-Match header carries the current ETag of the page
     @GetMapping("/user")
-    public ResponseEntity<JsonResponse> getUserBalances(
+    public ResponseEntity<?> getUserBalances(
             @ParameterObject
             @PageableDefault(page = 0, size = 10, sort = "id,asc")
-            Pageable pageable
+            Pageable pageable,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        try {
+            debtOptimizationScheduler.ensureOptimizedForCurrentUser();
+            return conditionalGetService.userBalances(userService.getCurrentUserId(),
+                    "page=" + pageable.getPageNumber() + "&size=" + pageable.getPageSize() + "&sort=" + pageable.getSort(),
+                    ifNoneMatch, () -> {
+                        Page<BalanceResponseDTO> userBalancesAsDTO = balanceService.getUserBalancesAsDTO(pageable);
+                        return ResponseEntity.ok(new JsonResponse(true, "User balances fetched successfully", userBalancesAsDTO));
+                    });
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new JsonResponse(false, e.getMessage(), e));
+        }
+    }
+
+    @GetMapping("/user/scroll")
+    public ResponseEntity<JsonResponse> scrollUserBalances(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        try {
+            debtOptimizationScheduler.ensureOptimizedForCurrentUser();
+            CursorPageDTO<BalanceResponseDTO> userBalances =
+                    balanceService.scrollUserBalancesAsDTO(cursor, Math.min(Math.max(size, 1), 100));
+
+            return ResponseEntity.ok(new JsonResponse(true, "User balances fetched successfully", userBalances));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new JsonResponse(false, e.getMessage(), e));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new JsonResponse(false, e.getMessage()));
+        }
+    }
+
+    // Totals owed and owing across every group, with the net balance per counterparty
+    @GetMapping("/user/summary")
+    public ResponseEntity<JsonResponse> getUserBalanceSummary() {
+        try {
+            debtOptimizationScheduler.ensureOptimizedForCurrentUser();
+            UserBalanceSummaryDTO summary = balanceSummaryService.getCurrentUserSummaryAsDTO();
+
+            return ResponseEntity.ok(new JsonResponse(true, "User balance summary fetched successfully", summary));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new JsonResponse(false, e.getMessage(), e));
+        }
+    }
+
+    // Net balance with every counterparty, netted across all shared groups
+    @GetMapping("/user/counterparties")
+    public ResponseEntity<JsonResponse> getCounterpartyNets() {
+        try {
+            debtOptimizationScheduler.ensureOptimizedForCurrentUser();
+            List<PairwiseNetDTO> nets = pairwiseNettingService.getCurrentUserNetsAsDTO();
+
+            return ResponseEntity.ok(new JsonResponse(true, "Counterparty balances fetched successfully", nets));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new JsonResponse(false, e.getMessage(), e));
+        }
+    }
+
+    // Net balance with one counterparty, with the amount of every shared group
+    @GetMapping("/user/counterparties/{counterpartyId}")
+    public ResponseEntity<JsonResponse> getCounterpartyNet(@PathVariable Long counterpartyId) {
+        try {
+            debtOptimizationScheduler.ensureOptimizedForCurrentUser();
+            PairwiseNetDetailDTO net = pairwiseNettingService.getCurrentUserNetAsDTO(counterpartyId);
+
+            return ResponseEntity.ok(new JsonResponse(true, "Counterparty balance fetched successfully", net));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new JsonResponse(false, e.getMessage(), e));
+        }
+    }
+
+    // Settles the net balance with a counterparty in every shared group in one transaction;
+    // amount, when given, must match the current net so a stale view is not settled
+    @PostMapping("/user/counterparties/{counterpartyId}/settle")
+    public ResponseEntity<JsonResponse> settleCounterpartyNet(
+            @PathVariable Long counterpartyId,
+            @RequestParam(required = false) BigDecimal amount
     ) {
         try {
-            Page<BalanceResponseDTO> userBalancesAsDTO = balanceService.getUserBalancesAsDTO(pageable);
+            // Settlements apply to the simplified balances
+            debtOptimizationScheduler.ensureOptimizedForCurrentUser();
+            PairwiseNetDetailDTO settled = pairwiseNettingService.settleCurrentUserNet(counterpartyId, amount);
 
-            return ResponseEntity.ok(new JsonResponse(true, "User balances fetched successfully", userBalancesAsDTO));
+            return ResponseEntity.ok(new JsonResponse(true, "Counterparty balance settled successfully", settled));
         } catch (UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new JsonResponse(false, e.getMessage(), e));
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new JsonResponse(false, e.getMessage(), e));
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new JsonResponse(false, e.getMessage()));
+        }
+    }
+
+    // Net positions of a group rebuilt from its ledger: the latest snapshot plus the events after it
+    @GetMapping("/group/{groupId}/ledger")
+    @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#groupId)")
+    public ResponseEntity<JsonResponse> replayGroupLedger(@PathVariable Long groupId) {
+        List<NetPositionDTO> positions = ledgerService.replayNetPositionsAsDTO(groupId);
+        return ResponseEntity.ok(new JsonResponse(true, "Group ledger replayed successfully", positions));
+    }
+
+    // The transfers that would settle the group now, and whether the exact or the greedy strategy produced them
+    @GetMapping("/group/{groupId}/settlement-plan")
+    @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#groupId)")
+    public ResponseEntity<JsonResponse> getSettlementPlan(@PathVariable Long groupId) {
+        try {
+            DebtPlan plan = balanceService.getSettlementPlan(groupId);
+            return ResponseEntity.ok(new JsonResponse(true, "Settlement plan computed successfully", plan));
+        } catch (GroupNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new JsonResponse(false, e.getMessage()));
         }
     }
 
+    // A retry carrying the same Idempotency-Key gets the original response instead of a second settlement
     @PostMapping("/settle-up")
     @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#balanceRequestDTO.groupId)")
-    public ResponseEntity<JsonResponse> settleBalance(BalanceRequestDTO balanceRequestDTO) {
+    public ResponseEntity<JsonResponse> settleBalance(
+            BalanceRequestDTO balanceRequestDTO,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey
+    ) {
+        // Settlements apply to the simplified balances, which must commit before the write's transaction starts
         try {
-            UserEntity currentUser = userService.getCurrentUser();
-            Long fromUserId = currentUser.getId();
+            debtOptimizationScheduler.ensureOptimized(balanceRequestDTO.getGroupId());
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new JsonResponse(false, e.getMessage()));
+        }
+
+        return idempotencyService.execute(idempotencyKey, "balances.settle", balanceRequestDTO,
+                () -> doSettleBalance(balanceRequestDTO));
+    }
+
+    private ResponseEntity<JsonResponse> doSettleBalance(BalanceRequestDTO balanceRequestDTO) {
+        try {
+            Long fromUserId = userService.getCurrentUserId();
 
             BalanceEntity settledBalance = balanceService.settleBalance(
                     balanceRequestDTO.getGroupId(),
@@ -72,6 +241,32 @@ public class BalanceController {
         } catch (BadRequestException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new JsonResponse(false, e.getMessage(), e));
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new JsonResponse(false, e.getMessage()));
+        }
+    }
+
+    // Settles many balances of the current user in one transaction and reports the outcome of each;
+    // settlements in groups the user has not joined are rejected individually
+    @PostMapping("/settle-up/bulk")
+    public ResponseEntity<JsonResponse> settleBalances(@Valid @RequestBody BulkSettlementRequestDTO bulkSettlementRequestDTO) {
+        try {
+            Long fromUserId = userService.getCurrentUserId();
+            List<BalanceRequestDTO> settlements = bulkSettlementRequestDTO.getSettlements();
+
+            // Settlements apply to the simplified balances, of the groups the user may settle in only
+            bulkSettlementService.getSettleableGroupIds(fromUserId, settlements)
+                    .forEach(debtOptimizationScheduler::ensureOptimized);
+
+            BulkSettlementResultDTO result = bulkSettlementService.settleBalances(fromUserId, settlements);
+            return ResponseEntity.ok(new JsonResponse(true, "Balances settled", result));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new JsonResponse(false, e.getMessage(), e));
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new JsonResponse(false, e.getMessage()));
         }
     }
 }
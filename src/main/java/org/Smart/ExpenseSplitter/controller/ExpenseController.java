@@ -2,26 +2,42 @@ package org.Smart.ExpenseSplitter.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.Smart.ExpenseSplitter.dto.CursorPageDTO;
 import org.Smart.ExpenseSplitter.dto.JsonResponse;
+import org.Smart.ExpenseSplitter.dto.expense.ExpenseImportResultDTO;
 import org.Smart.ExpenseSplitter.dto.expense.ExpenseRequestDTO;
 import org.Smart.ExpenseSplitter.dto.expense.ExpenseResponseDTO;
 import org.Smart.ExpenseSplitter.entity.ExpenseEntity;
 import org.Smart.ExpenseSplitter.exception.ExpenseNotFoundException;
 import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
 import org.Smart.ExpenseSplitter.exception.UserNotFoundException;
+import org.Smart.ExpenseSplitter.service.ConditionalGetService;
+import org.Smart.ExpenseSplitter.service.DebtOptimizationScheduler;
+import org.Smart.ExpenseSplitter.service.ExpenseExportService;
+import org.Smart.ExpenseSplitter.service.ExpenseImportService;
 import org.Smart.ExpenseSplitter.service.ExpenseService;
+import org.Smart.ExpenseSplitter.service.IdempotencyService;
+import org.Smart.ExpenseSplitter.type.ExpenseImportFormat;
+import org.Smart.ExpenseSplitter.util.FieldSelection;
 import org.apache.coyote.BadRequestException;
 import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.nio.file.AccessDeniedException;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/v1/expenses")
@@ -30,28 +46,43 @@ import java.nio.file.AccessDeniedException;
 public class ExpenseController {
 
     private final ExpenseService expenseService;
+    private final ExpenseImportService expenseImportService;
+    private final ExpenseExportService expenseExportService;
+    private final DebtOptimizationScheduler debtOptimizationScheduler;
+    private final IdempotencyService idempotencyService;
+    private final ConditionalGetService conditionalGetService;
 
-    public ExpenseController(ExpenseService expenseService) {
+    public ExpenseController(ExpenseService expenseService, ExpenseImportService expenseImportService,
+                             ExpenseExportService expenseExportService, DebtOptimizationScheduler debtOptimizationScheduler,
+                             IdempotencyService idempotencyService, ConditionalGetService conditionalGetService) {
         this.expenseService = expenseService;
+        this.expenseImportService = expenseImportService;
+        this.expenseExportService = expenseExportService;
+        this.debtOptimizationScheduler = debtOptimizationScheduler;
+        this.idempotencyService = idempotencyService;
+        this.conditionalGetService = conditionalGetService;
     }
 
     /**
      * Endpoint to get a list of expenses for the authenticated user.
      * Requires the user to be the one requesting their own expenses.
+     *
+     * @param fields Comma-separated scalar fields to return, all of them when omitted.
+     * @param expand Comma-separated associations to return (group, group.users, payer, participants), all of them when omitted.
      */
     @Operation(summary = "Get a list of expenses for the authenticated user")
     @GetMapping
     public ResponseEntity<JsonResponse> getUserExpenses(
             @ParameterObject
             @PageableDefault(page = 0, size = 10, sort = "id,asc")
-            Pageable pageable
+            Pageable pageable,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String expand
     ) {
         try {
-            // Fetch user expenses
-            Page<ExpenseEntity> expenses = expenseService.getUserExpenses(pageable);
-
-            // Map ExpenseEntities to ExpenseResponseDTOs
-            Page<ExpenseResponseDTO> expenseResponseDTOs = expenses.map(ExpenseResponseDTO::new);
+            // Fetch user expenses as ExpenseResponseDTOs
+            FieldSelection selection = FieldSelection.parse(fields, expand, ExpenseResponseDTO.FIELDS, ExpenseResponseDTO.EXPANSIONS);
+            Page<ExpenseResponseDTO> expenseResponseDTOs = expenseService.getUserExpensesAsDTO(pageable, selection);
             return ResponseEntity.ok(new JsonResponse(true, "User expenses fetched successfully", expenseResponseDTOs));
         } catch (AccessDeniedException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new JsonResponse(false, e.getMessage(), null));
@@ -60,20 +91,66 @@ public class ExpenseController {
         }
     }
 
+    /**
+     * Endpoint to scroll through the authenticated user's expenses with a keyset cursor.
+     * Pages are ordered by creation time and do not slow down as the client scrolls deeper.
+     *
+     * @param cursor The cursor returned with the previous slice, omitted for the first slice.
+     * @param size   Maximum number of expenses to return (1 to 100).
+     * @param fields Comma-separated scalar fields to return, all of them when omitted.
+     * @param expand Comma-separated associations to return, all of them when omitted.
+     */
+    @Operation(summary = "Scroll through the authenticated user's expenses with a cursor")
+    @GetMapping("/scroll")
+    public ResponseEntity<JsonResponse> scrollUserExpenses(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String expand
+    ) {
+        try {
+            FieldSelection selection = FieldSelection.parse(fields, expand, ExpenseResponseDTO.FIELDS, ExpenseResponseDTO.EXPANSIONS);
+            CursorPageDTO<ExpenseResponseDTO> expenses = expenseService.scrollUserExpensesAsDTO(cursor, clampSize(size), selection);
+            return ResponseEntity.ok(new JsonResponse(true, "User expenses fetched successfully", expenses));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, e.getMessage(), null));
+        }
+    }
+
     /**
      * Endpoint to get the details of a specific expense.
      * Requires the user to be the owner or a member of the group to view the expense details.
+     *
+     * Answers 304 Not Modified when the If-None-Match header carries the current ETag of the expense.
+     *
+     * @param fields      Comma-separated scalar fields to return, all of them when omitted.
+     * @param expand      Comma-separated associations to return, all of them when omitted.
+     * @param ifNoneMatch The ETag of the client's copy, if it has one.
      */
     @Operation(summary = "Get the details of a specific expense")
     @PreAuthorize("@expenseService.isUserMemberOrOwnerOfGroupByExpense(#expenseId)")
     @GetMapping("/{expenseId}")
-    public ResponseEntity<JsonResponse> getExpenseDetail(@PathVariable Long expenseId) {
+    public ResponseEntity<?> getExpenseDetail(
+            @PathVariable Long expenseId,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String expand,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        FieldSelection selection;
+        try {
+            selection = FieldSelection.parse(fields, expand, ExpenseResponseDTO.FIELDS, ExpenseResponseDTO.EXPANSIONS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, e.getMessage(), null));
+        }
+
+        return conditionalGetService.expenseDetail(expenseId, "fields=" + fields + "&expand=" + expand, ifNoneMatch,
+                () -> readExpenseDetail(expenseId, selection));
+    }
+
+    private ResponseEntity<JsonResponse> readExpenseDetail(Long expenseId, FieldSelection selection) {
         try {
-            ExpenseEntity expenseDetail = expenseService.getExpenseDetail(expenseId);
-            ExpenseResponseDTO expenseDetailResponseDTO = new ExpenseResponseDTO(expenseDetail);
+            ExpenseResponseDTO expenseDetailResponseDTO = expenseService.getExpenseDetailAsDTO(expenseId, selection);
             return ResponseEntity.ok(new JsonResponse(true, "Expense detail fetched successfully", expenseDetailResponseDTO));
-        } catch (AccessDeniedException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new JsonResponse(false, e.getMessage(), null));
         } catch (ExpenseNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new JsonResponse(false, e.getMessage(), null));
         } catch (Exception e) {
@@ -85,8 +162,11 @@ public class ExpenseController {
      * Endpoint to create a new expense within a group.
      * The user must be a member of the group to create the expense.
      *
+     * A retry carrying the same Idempotency-Key gets the original response instead of a second expense.
+     *
      * @param groupId           The ID of the group where the expense will be created.
      * @param expenseRequestDTO The data for the expense to be created.
+     * @param idempotencyKey    Optional key identifying the request across retries.
      * @return A response containing the created expense data.
      */
     @Operation(summary = "Create a new expense within a specific group")
@@ -94,41 +174,149 @@ public class ExpenseController {
     @PostMapping("/group/{groupId}/create")
     public ResponseEntity<JsonResponse> createExpense(
             @PathVariable Long groupId,
-            @RequestBody ExpenseRequestDTO expenseRequestDTO
+            @RequestBody ExpenseRequestDTO expenseRequestDTO,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey
     ) {
+        return idempotencyService.execute(idempotencyKey, "expenses.create:" + groupId, expenseRequestDTO,
+                () -> doCreateExpense(groupId, expenseRequestDTO));
+    }
+
+    private ResponseEntity<JsonResponse> doCreateExpense(Long groupId, ExpenseRequestDTO expenseRequestDTO) {
         try {
             // Call the service to create the expense
             ExpenseEntity createdExpense = expenseService.addExpense(groupId, expenseRequestDTO);
 
             // Map the created expense to a response DTO
-            ExpenseResponseDTO createdExpenseResponseDTO = new ExpenseResponseDTO(createdExpense);
+            ExpenseResponseDTO createdExpenseResponseDTO = expenseService.getExpenseDetailAsDTO(createdExpense.getId());
 
             return ResponseEntity.status(HttpStatus.CREATED).body(new JsonResponse(true, "Expense created successfully", createdExpenseResponseDTO));
         } catch (GroupNotFoundException | UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new JsonResponse(false, e.getMessage(), null));
         } catch (BadRequestException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, e.getMessage(), null));
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new JsonResponse(false, e.getMessage(), null));
+        }
+    }
+
+    /**
+     * Endpoint to import many expenses into a group from a stream.
+     * The body is NDJSON (one expense request per line) or CSV with a header row;
+     * in CSV the participant IDs are separated by ';'.
+     * Invalid rows are reported individually and do not abort the import.
+     *
+     * @param groupId     The ID of the group to import the expenses into.
+     * @param contentType Either application/x-ndjson or text/csv.
+     * @param request     The request whose body is streamed.
+     * @return A response containing the number of imported and failed rows and the row errors.
+     */
+    @Operation(summary = "Import expenses into a specific group from an NDJSON or CSV stream")
+    @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#groupId)")
+    @PostMapping(value = "/group/{groupId}/import", consumes = {ExpenseImportFormat.NDJSON_VALUE, ExpenseImportFormat.CSV_VALUE})
+    public ResponseEntity<JsonResponse> importExpenses(
+            @PathVariable Long groupId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request
+    ) {
+        try {
+            ExpenseImportFormat format = ExpenseImportFormat.fromContentType(contentType);
+            ExpenseImportResultDTO result = expenseImportService.importExpenses(groupId, request.getInputStream(), format);
+            return ResponseEntity.ok(new JsonResponse(true, "Expenses imported successfully", result));
+        } catch (GroupNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new JsonResponse(false, e.getMessage(), null));
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, e.getMessage(), null));
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new JsonResponse(false, e.getMessage(), null));
         }
     }
 
+    /**
+     * Endpoint to export the full ledger of a group: every expense with its participants, then the current balances.
+     * The response is streamed while the rows are read, whatever the size of the group.
+     *
+     * @param groupId The ID of the group to export.
+     * @param format  Either ndjson (default) or csv.
+     * @return A streamed NDJSON or CSV body, or an error message if the format is unknown.
+     */
+    @Operation(summary = "Export the expenses and balances of a specific group as NDJSON or CSV")
+    @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#groupId)")
+    @GetMapping("/group/{groupId}/export")
+    public ResponseEntity<?> exportExpenses(
+            @PathVariable Long groupId,
+            @RequestParam(defaultValue = "ndjson") String format
+    ) {
+        ExpenseImportFormat exportFormat;
+        try {
+            exportFormat = ExpenseImportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, "Unsupported export format: " + format, null));
+        }
+
+        // Export the simplified balances
+        debtOptimizationScheduler.ensureOptimized(groupId);
+
+        StreamingResponseBody body = output -> expenseExportService.exportGroup(groupId, exportFormat, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"group-" + groupId + "." + exportFormat.name().toLowerCase(Locale.ROOT) + "\"")
+                .body(body);
+    }
+
     /**
      * Endpoint to get a list of expenses for a specific group.
      * Requires the user to be a member of the group to view the expenses.
+     *
+     * @param fields Comma-separated scalar fields to return, all of them when omitted.
+     * @param expand Comma-separated associations to return, all of them when omitted.
      */
     @GetMapping("/group/{groupId}")
     public ResponseEntity<JsonResponse> getExpensesByGroupId(
             @PathVariable Long groupId,
             @ParameterObject
             @PageableDefault(page = 0, size = 10, sort = "id,asc")
-            Pageable pageable
+            Pageable pageable,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String expand
     ) {
         try {
-            Page<ExpenseEntity> expensesByGroup = expenseService.getGroupExpenses(groupId, pageable);
-            Page<ExpenseResponseDTO> expensesByGroupResponseDTOs = expensesByGroup.map(ExpenseResponseDTO::new);
+            FieldSelection selection = FieldSelection.parse(fields, expand, ExpenseResponseDTO.FIELDS, ExpenseResponseDTO.EXPANSIONS);
+            Page<ExpenseResponseDTO> expensesByGroupResponseDTOs = expenseService.getGroupExpensesAsDTO(groupId, pageable, selection);
             return ResponseEntity.ok(new JsonResponse(true, "Expenses by group ID fetched successfully", expensesByGroupResponseDTOs));
         } catch (GroupNotFoundException | UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new JsonResponse(false, e.getMessage(), null));
-        } catch (BadRequestException e) {
+        } catch (BadRequestException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, e.getMessage(), null));
+        }
+    }
+
+    /**
+     * Endpoint to scroll through the expenses of a specific group with a keyset cursor.
+     * Requires the user to be a member or the owner of the group.
+     *
+     * @param groupId The ID of the group.
+     * @param cursor  The cursor returned with the previous slice, omitted for the first slice.
+     * @param size    Maximum number of expenses to return (1 to 100).
+     * @param fields  Comma-separated scalar fields to return, all of them when omitted.
+     * @param expand  Comma-separated associations to return, all of them when omitted.
+     */
+    @Operation(summary = "Scroll through the expenses of a specific group with a cursor")
+    @GetMapping("/group/{groupId}/scroll")
+    public ResponseEntity<JsonResponse> scrollExpensesByGroupId(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String expand
+    ) {
+        try {
+            FieldSelection selection = FieldSelection.parse(fields, expand, ExpenseResponseDTO.FIELDS, ExpenseResponseDTO.EXPANSIONS);
+            CursorPageDTO<ExpenseResponseDTO> expenses = expenseService.scrollGroupExpensesAsDTO(groupId, cursor, clampSize(size), selection);
+            return ResponseEntity.ok(new JsonResponse(true, "Expenses by group ID fetched successfully", expenses));
+        } catch (GroupNotFoundException | UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new JsonResponse(false, e.getMessage(), null));
+        } catch (BadRequestException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, e.getMessage(), null));
         }
     }
@@ -146,7 +334,7 @@ public class ExpenseController {
     ) {
         try {
             ExpenseEntity updatedExpense = expenseService.updateExpense(expenseId, expenseRequestDTO);
-            ExpenseResponseDTO expenseResponseDTO = new ExpenseResponseDTO(updatedExpense);
+            ExpenseResponseDTO expenseResponseDTO = expenseService.getExpenseDetailAsDTO(updatedExpense.getId());
             return ResponseEntity.ok(new JsonResponse(true, "Expense updated successfully", expenseResponseDTO));
         } catch (AccessDeniedException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new JsonResponse(false, e.getMessage(), null));
@@ -176,4 +364,8 @@ public class ExpenseController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new JsonResponse(false, "An error occurred: " + e.getMessage(), null));
         }
     }
+
+    private static int clampSize(int size) {
+        return Math.min(Math.max(size, 1), 100);
+    }
 }
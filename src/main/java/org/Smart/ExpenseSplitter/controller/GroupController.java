@@ -3,17 +3,26 @@ package org.Smart.ExpenseSplitter.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.Smart.ExpenseSplitter.dto.JsonResponse;
+import org.Smart.ExpenseSplitter.dto.balance.BalanceResponseDTO;
+import org.Smart.ExpenseSplitter.dto.expense.ExpenseResponseDTO;
 import org.Smart.ExpenseSplitter.dto.group.GroupRequestDTO;
 import org.Smart.ExpenseSplitter.dto.group.GroupResponseDTO;
+import org.Smart.ExpenseSplitter.dto.group.GroupSummaryDTO;
+import org.Smart.ExpenseSplitter.dto.user.UserResponseDTO;
 import org.Smart.ExpenseSplitter.entity.GroupEntity;
 import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
 import org.Smart.ExpenseSplitter.exception.UserNotFoundException;
+import org.Smart.ExpenseSplitter.service.ConditionalGetService;
+import org.Smart.ExpenseSplitter.service.DebtOptimizationScheduler;
+import org.Smart.ExpenseSplitter.service.ExpenseService;
 import org.Smart.ExpenseSplitter.service.GroupService;
+import org.Smart.ExpenseSplitter.util.FieldSelection;
 import org.apache.coyote.BadRequestException;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -32,41 +41,159 @@ import org.springframework.web.bind.annotation.*;
 public class GroupController {
 
     private final GroupService groupService;
+    private final ExpenseService expenseService;
+    private final DebtOptimizationScheduler debtOptimizationScheduler;
+    private final ConditionalGetService conditionalGetService;
 
     /**
      * Constructor to initialize the GroupController with the GroupService dependency.
      *
-     * @param groupService The service responsible for handling group-related operations.
+     * @param groupService              The service responsible for handling group-related operations.
+     * @param expenseService            Serves the expenses of a group page by page.
+     * @param debtOptimizationScheduler Brings the balances of dirty groups up to date before they are read.
+     * @param conditionalGetService     Answers conditional requests for the group detail.
      */
-    public GroupController(GroupService groupService) {
+    public GroupController(GroupService groupService, ExpenseService expenseService,
+                           DebtOptimizationScheduler debtOptimizationScheduler, ConditionalGetService conditionalGetService) {
         this.groupService = groupService;
+        this.expenseService = expenseService;
+        this.debtOptimizationScheduler = debtOptimizationScheduler;
+        this.conditionalGetService = conditionalGetService;
     }
 
     /**
      * Endpoint to fetch the details of a specific group.
-     * Requires the group ID to fetch the details of the group.
+     * Returns the group summary with its counts and totals, unless fields or associations are requested;
+     * the members, expenses and balances themselves are paged through the sub-resources below.
      *
      * @param groupId The ID of the group whose details are to be retrieved.
+     * @param fields  Comma-separated scalar fields to return instead of the summary.
+     * @param expand  Comma-separated associations to return instead of the summary (creator, users, expenses, balances).
+     * @param ifNoneMatch The ETag of the client's copy; answered with 304 Not Modified while it is current.
      * @return A ResponseEntity containing the group details or an error message if not found.
      */
     @Operation(summary = "Get group detail")
     @GetMapping("/{groupId}")
-    public ResponseEntity<JsonResponse> getGroupDetail(@PathVariable Long groupId) {
+    public ResponseEntity<?> getGroupDetail(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String expand,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        FieldSelection selection = null;
+        if (fields != null || expand != null) {
+            try {
+                selection = FieldSelection.parse(fields, expand, GroupResponseDTO.FIELDS, GroupResponseDTO.EXPANSIONS);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new JsonResponse(false, e.getMessage()));
+            }
+        }
+
+        // The summary and the balances depend on the pending debt optimization, which must land before the version probe
+        if (selection == null || selection.expands("balances")) {
+            debtOptimizationScheduler.ensureOptimized(groupId);
+        }
+
+        FieldSelection requested = selection;
+        return conditionalGetService.groupDetail(groupId, "fields=" + fields + "&expand=" + expand, ifNoneMatch,
+                () -> readGroupDetail(groupId, requested));
+    }
+
+    // Builds the summary when no selection was requested, otherwise the selected representation
+    private ResponseEntity<JsonResponse> readGroupDetail(Long groupId, FieldSelection selection) {
         try {
-            GroupEntity groupDetail = groupService.getGroupDetail(groupId);
-            GroupResponseDTO groupResponseDTO = new GroupResponseDTO(groupDetail);
-            return ResponseEntity.ok(new JsonResponse(true, "Group detail fetched successfully", groupResponseDTO));
+            Object groupDetail = selection == null
+                    ? groupService.getGroupSummaryAsDTO(groupId)
+                    : groupService.getGroupDetailAsDTO(groupId, selection);
+            return ResponseEntity.ok(new JsonResponse(true, "Group detail fetched successfully", groupDetail));
         } catch (GroupNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new JsonResponse(false, e.getMessage()));
         }
     }
 
+    /**
+     * Endpoint to fetch a page of the members of a group.
+     * Requires the user to be a member or the owner of the group.
+     *
+     * @param groupId  The ID of the group.
+     * @param pageable Pagination parameters for retrieving members.
+     * @return A paginated list of the group's members.
+     */
+    @Operation(summary = "Get the members of a group")
+    @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#groupId)")
+    @GetMapping("/{groupId}/members")
+    public ResponseEntity<JsonResponse> getGroupMembers(
+            @PathVariable Long groupId,
+            @ParameterObject
+            @PageableDefault(page = 0, size = 20, sort = "id,asc")
+            Pageable pageable
+    ) {
+        Page<UserResponseDTO> members = groupService.getGroupMembersAsDTO(groupId, pageable);
+        return ResponseEntity.ok(new JsonResponse(true, "Group members fetched successfully", members));
+    }
+
+    /**
+     * Endpoint to fetch a page of the expenses of a group.
+     * Each expense carries its payer and participants but not the group; other fields and associations
+     * can be requested as on the expense endpoints.
+     *
+     * @param groupId  The ID of the group.
+     * @param pageable Pagination parameters for retrieving expenses.
+     * @param fields   Comma-separated scalar fields to return, all of them when omitted.
+     * @param expand   Comma-separated associations to return, payer and participants when omitted.
+     * @return A paginated list of the group's expenses.
+     */
+    @Operation(summary = "Get the expenses of a group")
+    @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#groupId)")
+    @GetMapping("/{groupId}/expenses")
+    public ResponseEntity<JsonResponse> getGroupExpenses(
+            @PathVariable Long groupId,
+            @ParameterObject
+            @PageableDefault(page = 0, size = 20, sort = "id,asc")
+            Pageable pageable,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "payer,participants") String expand
+    ) {
+        try {
+            FieldSelection selection = FieldSelection.parse(fields, expand, ExpenseResponseDTO.FIELDS, ExpenseResponseDTO.EXPANSIONS);
+            Page<ExpenseResponseDTO> expenses = expenseService.getGroupExpensesAsDTO(groupId, pageable, selection);
+            return ResponseEntity.ok(new JsonResponse(true, "Group expenses fetched successfully", expenses));
+        } catch (BadRequestException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new JsonResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint to fetch a page of the open balances of a group, with pending debt optimization applied.
+     *
+     * @param groupId  The ID of the group.
+     * @param pageable Pagination parameters for retrieving balances.
+     * @return A paginated list of the group's balances.
+     */
+    @Operation(summary = "Get the balances of a group")
+    @PreAuthorize("@groupService.isCurrentUserMemberOrOwnerOfGroup(#groupId)")
+    @GetMapping("/{groupId}/balances")
+    public ResponseEntity<JsonResponse> getGroupBalances(
+            @PathVariable Long groupId,
+            @ParameterObject
+            @PageableDefault(page = 0, size = 20, sort = "id.userId,asc")
+            Pageable pageable
+    ) {
+        debtOptimizationScheduler.ensureOptimized(groupId);
+        Page<BalanceResponseDTO> balances = groupService.getGroupBalancesAsDTO(groupId, pageable);
+        return ResponseEntity.ok(new JsonResponse(true, "Group balances fetched successfully", balances));
+    }
+
     /**
      * Endpoint to fetch all groups that the authenticated user is part of.
      * Includes groups that the user owns or has joined.
      *
      * @param pageable Pagination parameters for retrieving groups.
+     * @param fields   Comma-separated scalar fields to return, all of them when omitted.
+     * @param expand   Comma-separated associations to return, all of them when omitted.
      * @return A paginated list of groups that the authenticated user is part of.
      */
     @Operation(summary = "Get all groups owned or joined by the authenticated user")
@@ -74,14 +201,23 @@ public class GroupController {
     public ResponseEntity<JsonResponse> getUserGroups(
             @ParameterObject
             @PageableDefault(page = 0, size = 10, sort = "id,asc")
-            Pageable pageable
+            Pageable pageable,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String expand
     ) {
         try {
-            Page<?> userGroups = groupService.getUserGroupsAsDTO(pageable);
+            FieldSelection selection = FieldSelection.parse(fields, expand, GroupResponseDTO.FIELDS, GroupResponseDTO.EXPANSIONS);
+            if (selection.expands("balances")) {
+                debtOptimizationScheduler.ensureOptimizedForCurrentUser();
+            }
+            Page<?> userGroups = groupService.getUserGroupsAsDTO(pageable, selection);
             return ResponseEntity.ok(new JsonResponse(true, "User groups fetched successfully", userGroups));
         } catch (UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new JsonResponse(false, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new JsonResponse(false, e.getMessage()));
         }
     }
 
@@ -97,10 +233,10 @@ public class GroupController {
     public ResponseEntity<JsonResponse> createGroup(GroupRequestDTO groupRequestDTO) {
         try {
             GroupEntity createdGroup = groupService.createGroup(groupRequestDTO);
-            GroupResponseDTO createdGroupResponseDTO = new GroupResponseDTO(createdGroup);
+            GroupSummaryDTO createdGroupSummaryDTO = groupService.getGroupSummaryAsDTO(createdGroup.getId());
 
             return ResponseEntity.status(HttpStatus.CREATED)
-                    .body(new JsonResponse(true, "Group created successfully", createdGroupResponseDTO));
+                    .body(new JsonResponse(true, "Group created successfully", createdGroupSummaryDTO));
         } catch (GroupNotFoundException | UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new JsonResponse(false, e.getMessage()));
@@ -124,12 +260,15 @@ public class GroupController {
     ) {
         try {
             GroupEntity updatedGroup = groupService.updateGroup(groupId, groupRequestDTO);
-            GroupResponseDTO updatedGroupResponseDTO = new GroupResponseDTO(updatedGroup);
+            GroupSummaryDTO updatedGroupSummaryDTO = groupService.getGroupSummaryAsDTO(updatedGroup.getId());
 
-            return ResponseEntity.ok(new JsonResponse(true, "Group updated successfully", updatedGroupResponseDTO));
+            return ResponseEntity.ok(new JsonResponse(true, "Group updated successfully", updatedGroupSummaryDTO));
         } catch (GroupNotFoundException | UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new JsonResponse(false, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new JsonResponse(false, e.getMessage()));
         }
     }
 
@@ -145,9 +284,9 @@ public class GroupController {
     public ResponseEntity<JsonResponse> joinGroup(@PathVariable Long groupId) {
         try {
             GroupEntity joinedGroup = groupService.joinGroup(groupId);
-            GroupResponseDTO joinedGroupResponseDTO = new GroupResponseDTO(joinedGroup);
+            GroupSummaryDTO joinedGroupSummaryDTO = groupService.getGroupSummaryAsDTO(joinedGroup.getId());
 
-            return ResponseEntity.ok(new JsonResponse(true, "Joined group successfully", joinedGroupResponseDTO));
+            return ResponseEntity.ok(new JsonResponse(true, "Joined group successfully", joinedGroupSummaryDTO));
         } catch (GroupNotFoundException | UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new JsonResponse(false, e.getMessage()));
@@ -169,9 +308,9 @@ public class GroupController {
     public ResponseEntity<JsonResponse> leaveGroup(@PathVariable Long groupId) {
         try {
             GroupEntity leavedGroup = groupService.leaveGroup(groupId);
-            GroupResponseDTO leavedGroupResponseDTO = new GroupResponseDTO(leavedGroup);
+            GroupSummaryDTO leavedGroupSummaryDTO = groupService.getGroupSummaryAsDTO(leavedGroup.getId());
 
-            return ResponseEntity.ok(new JsonResponse(true, "Left group successfully", leavedGroupResponseDTO));
+            return ResponseEntity.ok(new JsonResponse(true, "Left group successfully", leavedGroupSummaryDTO));
         } catch (GroupNotFoundException | UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new JsonResponse(false, e.getMessage()));
@@ -0,0 +1,13 @@
+package org.Smart.ExpenseSplitter.dto;
+
+import java.util.List;
+
+/**
+ * One slice of a keyset-paginated listing.
+ *
+ * @param content    the rows of this slice
+ * @param nextCursor token to pass as {@code cursor} for the next slice, null when there is none
+ * @param hasNext    whether more rows follow
+ */
+public record CursorPageDTO<T>(List<T> content, String nextCursor, boolean hasNext) {
+}
@@ -0,0 +1,21 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO for settling many balances of the current user in one request.
+ */
+@Data
+public class BulkSettlementRequestDTO {
+
+    // Items are checked one by one by the service, so an invalid settlement is reported without rejecting the rest
+    @Schema(description = "Settlements to apply, each paid by the current user")
+    @NotEmpty
+    @Size(max = 500)
+    private List<BalanceRequestDTO> settlements;
+}
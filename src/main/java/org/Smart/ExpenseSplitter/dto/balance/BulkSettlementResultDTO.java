@@ -0,0 +1,10 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import java.util.List;
+
+public record BulkSettlementResultDTO(
+        int settled,
+        int rejected,
+        List<SettlementOutcomeDTO> outcomes     // In the order of the request
+) {
+}
@@ -0,0 +1,9 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import java.math.BigDecimal;
+
+public record CounterpartyBalanceDTO(
+        Long userId,
+        BigDecimal amount   // Positive when this user owes the current user
+) {
+}
@@ -0,0 +1,9 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import java.math.BigDecimal;
+
+public record GroupNetDTO(
+        Long groupId,
+        BigDecimal amount   // Positive when the counterparty owes the current user in this group
+) {
+}
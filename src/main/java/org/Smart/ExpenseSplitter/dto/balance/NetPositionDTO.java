@@ -0,0 +1,9 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import java.math.BigDecimal;
+
+public record NetPositionDTO(
+        Long userId,
+        BigDecimal amount   // Positive when the user is owed money
+) {
+}
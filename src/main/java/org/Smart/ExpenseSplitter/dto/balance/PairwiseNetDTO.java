@@ -0,0 +1,10 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import java.math.BigDecimal;
+
+public record PairwiseNetDTO(
+        Long counterpartyId,
+        BigDecimal amount,  // Net across every shared group; positive when the counterparty owes the current user
+        long groups         // Shared groups with an outstanding balance between the two users
+) {
+}
@@ -0,0 +1,11 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record PairwiseNetDetailDTO(
+        Long counterpartyId,
+        BigDecimal amount,          // Sum of the group amounts; positive when the counterparty owes the current user
+        List<GroupNetDTO> groups    // Ordered by group ID
+) {
+}
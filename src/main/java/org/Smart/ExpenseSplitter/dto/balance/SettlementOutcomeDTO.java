@@ -0,0 +1,16 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SettlementOutcomeDTO(
+        Long groupId,
+        Long toUserId,
+        BigDecimal amount,
+        boolean settled,
+        BigDecimal remaining,   // Still owed after the settlement, null when it was rejected
+        String error            // Why the settlement was rejected, null when it was applied
+) {
+}
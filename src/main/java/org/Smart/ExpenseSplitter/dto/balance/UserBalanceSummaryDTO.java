@@ -0,0 +1,12 @@
+package org.Smart.ExpenseSplitter.dto.balance;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record UserBalanceSummaryDTO(
+        BigDecimal totalOwed,                      // Owed to the current user across all groups
+        BigDecimal totalOwing,                     // Owed by the current user across all groups
+        BigDecimal net,                            // totalOwed - totalOwing
+        List<CounterpartyBalanceDTO> counterparties
+) {
+}
@@ -0,0 +1,7 @@
+package org.Smart.ExpenseSplitter.dto.expense;
+
+public record ExpenseImportErrorDTO(
+        long line,
+        String message
+) {
+}
@@ -0,0 +1,10 @@
+package org.Smart.ExpenseSplitter.dto.expense;
+
+import java.util.List;
+
+public record ExpenseImportResultDTO(
+        long imported,
+        long failed,
+        List<ExpenseImportErrorDTO> errors  // Capped, see ExpenseImportService.MAX_REPORTED_ERRORS
+) {
+}
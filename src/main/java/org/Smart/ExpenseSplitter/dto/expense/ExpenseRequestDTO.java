@@ -28,4 +28,11 @@ public class ExpenseRequestDTO {
 
     @NotNull
     private List<Long> participantIds;
+
+    @Schema(description = "How the amount is split: EQUAL (default), EXACT, PERCENTAGE or SHARES", example = "EQUAL")
+    private String splitType;
+
+    @Schema(description = "One value per participant, in the order of participantIds: the amount for EXACT, " +
+            "the percentage for PERCENTAGE, the weight for SHARES; ignored for EQUAL", example = "[60, 40]")
+    private List<BigDecimal> splitValues;
 }
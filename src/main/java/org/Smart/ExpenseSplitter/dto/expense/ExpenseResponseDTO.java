@@ -4,12 +4,16 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import org.Smart.ExpenseSplitter.dto.group.GroupResponseDTO;
 import org.Smart.ExpenseSplitter.dto.user.UserResponseDTO;
 import org.Smart.ExpenseSplitter.entity.ExpenseEntity;
+import org.Smart.ExpenseSplitter.entity.GroupEntity;
 import org.Smart.ExpenseSplitter.type.ExpenseType;
+import org.Smart.ExpenseSplitter.type.SplitType;
+import org.Smart.ExpenseSplitter.util.FieldSelection;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 
@@ -19,32 +23,55 @@ public record ExpenseResponseDTO(
         String description,
         BigDecimal amount,
         ExpenseType expenseType,
+        SplitType splitType,
         GroupResponseDTO group,
         UserResponseDTO payer,
         List<UserResponseDTO> participants,
         LocalDateTime createdAt,
         LocalDateTime updatedAt
 ) {
+    // Names accepted by the fields and expand query parameters
+    public static final Set<String> FIELDS =
+            Set.of("id", "description", "amount", "expenseType", "splitType", "createdAt", "updatedAt");
+    public static final Set<String> EXPANSIONS = Set.of("group", "group.users", "payer", "participants");
+
     public ExpenseResponseDTO(ExpenseEntity expenseEntity) {
+        this(expenseEntity, FieldSelection.ALL);
+    }
+
+    public ExpenseResponseDTO(ExpenseEntity expenseEntity, FieldSelection selection) {
         this(
                 expenseEntity.getId(),
-                expenseEntity.getDescription(),
-                expenseEntity.getAmount(),
-                expenseEntity.getExpenseType(),
-                new GroupResponseDTO(
-                        expenseEntity.getId(),
-                        expenseEntity.getGroup().getName(),
-                        new UserResponseDTO(expenseEntity.getGroup().getOwner()),
-                        expenseEntity.getGroup().getMembers(),
-                        expenseEntity.getGroup().getCreatedAt(),
-                        expenseEntity.getGroup().getUpdatedAt()
-                ),
-                new UserResponseDTO(expenseEntity.getPayer()),
-                Optional.ofNullable(expenseEntity.getParticipants())
+                selection.field("description", expenseEntity::getDescription),
+                selection.field("amount", expenseEntity::getAmount),
+                selection.field("expenseType", expenseEntity::getExpenseType),
+                selection.field("splitType", () -> Optional.ofNullable(expenseEntity.getSplitType()).orElse(SplitType.EQUAL)),
+                selection.expands("group") ? group(expenseEntity.getGroup(), selection.expands("group.users")) : null,
+                selection.expands("payer") ? new UserResponseDTO(expenseEntity.getPayer()) : null,
+                selection.expands("participants")
+                        ? Optional.ofNullable(expenseEntity.getParticipants())
+                        .map(u -> u.stream().map(UserResponseDTO::new).collect(Collectors.toList()))
+                        .orElse(List.of())
+                        : null,
+                selection.field("createdAt", expenseEntity::getCreatedAt),
+                selection.field("updatedAt", expenseEntity::getUpdatedAt)
+        );
+    }
+
+    private static GroupResponseDTO group(GroupEntity group, boolean withUsers) {
+        return new GroupResponseDTO(
+                group.getId(),
+                group.getName(),
+                new UserResponseDTO(group.getOwner()),
+                withUsers
+                        ? Optional.ofNullable(group.getMembers())
                         .map(u -> u.stream().map(UserResponseDTO::new).collect(Collectors.toList()))
-                        .orElse(List.of()),
-                expenseEntity.getCreatedAt(),
-                expenseEntity.getUpdatedAt()
+                        .orElse(List.of())
+                        : null,
+                null,
+                null,
+                group.getCreatedAt(),
+                group.getUpdatedAt()
         );
     }
 }
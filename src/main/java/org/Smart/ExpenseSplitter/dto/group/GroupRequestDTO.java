@@ -13,5 +13,9 @@ public class GroupRequestDTO {
     @Schema(description = "Group's name", example = "Safar shomal")
     @NotNull
     private String name;
+
+    @Schema(description = "How debts are simplified: GREEDY, or EXACT for the fewest transfers; unchanged when omitted",
+            example = "EXACT")
+    private String settlementStrategy;
 }
 
@@ -6,10 +6,12 @@ import org.Smart.ExpenseSplitter.dto.expense.ExpenseResponseDTO;
 import org.Smart.ExpenseSplitter.dto.user.UserResponseDTO;
 import org.Smart.ExpenseSplitter.entity.GroupEntity;
 import org.Smart.ExpenseSplitter.entity.UserEntity;
+import org.Smart.ExpenseSplitter.util.FieldSelection;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 
@@ -47,6 +49,14 @@ public record GroupResponseDTO(
         );
     }
 
+    // Names accepted by the fields and expand query parameters
+    public static final Set<String> FIELDS = Set.of("id", "name", "createdAt", "updatedAt");
+    public static final Set<String> EXPANSIONS = Set.of("creator", "users", "expenses", "balances");
+
+    // Expenses nested in a group leave out the group they belong to
+    private static final FieldSelection NESTED_EXPENSE =
+            new FieldSelection(null, Set.of("payer", "participants"));
+
     public GroupResponseDTO(GroupEntity group) {
         this(
                 group.getId(),
@@ -65,4 +75,29 @@ public record GroupResponseDTO(
                 group.getUpdatedAt()
         );
     }
+
+    public GroupResponseDTO(GroupEntity group, FieldSelection selection) {
+        this(
+                group.getId(),
+                selection.field("name", group::getName),
+                selection.expands("creator") ? new UserResponseDTO(group.getOwner()) : null,
+                selection.expands("users")
+                        ? Optional.ofNullable(group.getMembers())
+                        .map(u -> u.stream().map(UserResponseDTO::new).collect(Collectors.toList()))
+                        .orElse(List.of())
+                        : null,
+                selection.expands("expenses")
+                        ? Optional.ofNullable(group.getExpenses())
+                        .map(u -> u.stream().map(e -> new ExpenseResponseDTO(e, NESTED_EXPENSE)).collect(Collectors.toList()))
+                        .orElse(List.of())
+                        : null,
+                selection.expands("balances")
+                        ? Optional.ofNullable(group.getBalances())
+                        .map(u -> u.stream().map(BalanceResponseDTO::new).collect(Collectors.toList()))
+                        .orElse(List.of())
+                        : null,
+                selection.field("createdAt", group::getCreatedAt),
+                selection.field("updatedAt", group::getUpdatedAt)
+        );
+    }
 }
@@ -0,0 +1,24 @@
+package org.Smart.ExpenseSplitter.dto.group;
+
+import org.Smart.ExpenseSplitter.dto.user.UserResponseDTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Group detail without its collections: the members, expenses and balances are counted and summed in SQL,
+ * and served page by page from the group's sub-resources.
+ */
+public record GroupSummaryDTO(
+        Long id,
+        String name,
+        UserResponseDTO creator,
+        long memberCount,
+        long expenseCount,
+        BigDecimal expenseTotal,    // Sum of all expense amounts
+        long balanceCount,
+        BigDecimal outstandingTotal, // Sum of all open balances
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+}
@@ -8,7 +8,9 @@ import lombok.EqualsAndHashCode;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "balances")
+@Table(name = "balances", indexes = {
+        @Index(name = "idx_balances_user_created", columnList = "user_id, created_at, group_id, owes_to")
+})
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class BalanceEntity extends BaseEntity {
@@ -0,0 +1,26 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Net balance between a user and one counterparty across every group.
+ * A positive amount means the counterparty owes the user, a negative amount means the user owes the counterparty.
+ */
+@Entity
+@Table(name = "counterparty_balances")
+@Data
+public class CounterpartyBalanceEntity {
+
+    @EmbeddedId
+    @AttributeOverrides({
+            @AttributeOverride(name = "userId", column = @Column(name = "user_id")),
+            @AttributeOverride(name = "counterpartyId", column = @Column(name = "counterparty_id"))
+    })
+    private CounterpartyBalanceId id;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+}
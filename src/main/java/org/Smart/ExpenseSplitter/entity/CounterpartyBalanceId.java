@@ -0,0 +1,18 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class CounterpartyBalanceId implements Serializable {
+
+    private Long userId;          // The user the summary belongs to
+    private Long counterpartyId;  // The other user
+}
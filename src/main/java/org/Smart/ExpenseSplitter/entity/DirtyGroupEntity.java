@@ -0,0 +1,25 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A group whose net positions changed since its debts were last optimized.
+ * Written in the same transaction as the change and removed in the same transaction as the optimization,
+ * so groups left dirty by a restart are still optimized afterwards.
+ */
+@Entity
+@Table(name = "dirty_groups")
+@Data
+public class DirtyGroupEntity {
+
+    @Id
+    @Column(name = "group_id")
+    private Long groupId;
+
+    // The first change since the last optimization
+    @Column(name = "dirty_since", nullable = false)
+    private LocalDateTime dirtySince;
+}
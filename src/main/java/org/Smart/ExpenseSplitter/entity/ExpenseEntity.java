@@ -5,19 +5,27 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.Smart.ExpenseSplitter.type.ExpenseType;
+import org.Smart.ExpenseSplitter.type.SplitType;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @Entity
-@Table(name = "expenses")
+@Table(name = "expenses", indexes = {
+        @Index(name = "idx_expenses_group_created", columnList = "group_id, created_at, id"),
+        @Index(name = "idx_expenses_payer_created", columnList = "payer_id, created_at, id")
+})
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class ExpenseEntity extends BaseEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "expense_id")
+    @TableGenerator(name = "expense_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_id",
+            pkColumnValue = "expenses", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -46,4 +54,16 @@ public class ExpenseEntity extends BaseEntity {
             inverseJoinColumns = @JoinColumn(name = "user_id")
     )
     private List<UserEntity> participants;
+
+    // Null on expenses created before splits were configurable, which were split equally
+    @Enumerated(EnumType.STRING)
+    private SplitType splitType = SplitType.EQUAL;
+
+    // The split value of each participant by user ID, empty for equal splits
+    @ElementCollection
+    @CollectionTable(name = "expense_split_values", joinColumns = @JoinColumn(name = "expense_id"))
+    @MapKeyColumn(name = "user_id")
+    @Column(name = "split_value", nullable = false)
+    @JsonIgnore
+    private Map<Long, BigDecimal> splitValues = new HashMap<>();
 }
@@ -4,17 +4,24 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.Smart.ExpenseSplitter.type.SettlementStrategy;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
 @Entity
 @Table(name = "`groups`")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "groups")
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class GroupEntity extends BaseEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "group_id")
+    @TableGenerator(name = "group_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_id",
+            pkColumnValue = "groups", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -24,6 +31,10 @@ public class GroupEntity extends BaseEntity {
     @JoinColumn(name = "owner_id", nullable = false)
     private UserEntity owner;
 
+    // How debts of the group are simplified; null on groups created before it was configurable, treated as GREEDY
+    @Enumerated(EnumType.STRING)
+    private SettlementStrategy settlementStrategy = SettlementStrategy.GREEDY;
+
     @JsonIgnore
     @OneToMany(mappedBy = "group", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ExpenseEntity> expenses;
@@ -32,8 +43,13 @@ public class GroupEntity extends BaseEntity {
     @OneToMany(mappedBy = "group", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<BalanceEntity> balances;
 
+    @JsonIgnore
+    @OneToMany(mappedBy = "group", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<NetPositionEntity> netPositions;
+
     @JsonIgnore
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "group_members")
     @JoinTable(
             name = "group_members",
             joinColumns = @JoinColumn(name = "group_id"),
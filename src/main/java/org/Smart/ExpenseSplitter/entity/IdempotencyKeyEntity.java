@@ -0,0 +1,41 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * The response of a write, kept so a retry with the same Idempotency-Key replays it.
+ * The row is inserted in progress and completed in the transaction of the write, so only successful
+ * responses are ever committed; rows expire after the configured retention.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_created", columnList = "created_at")
+})
+@Data
+public class IdempotencyKeyEntity {
+
+    // Status of a row whose write has not completed yet
+    public static final int IN_PROGRESS = 0;
+
+    @EmbeddedId
+    private IdempotencyKeyId id;
+
+    // SHA-256 of the operation and the request body, a reused key with another request is refused
+    @Column(name = "request_hash", nullable = false, length = 32)
+    private byte[] requestHash;
+
+    // HTTP status of the stored response, or IN_PROGRESS
+    @Column(nullable = false)
+    private int status;
+
+    // The serialized JsonResponse body
+    @Lob
+    @Column(nullable = false)
+    private String body;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,22 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class IdempotencyKeyId implements Serializable {
+
+    @Column(name = "user_id")
+    private Long userId;            // Keys are scoped to the user who sent them
+
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;  // The Idempotency-Key header
+}
@@ -0,0 +1,54 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.Smart.ExpenseSplitter.type.LedgerEventType;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only record of one change to the net positions of a group.
+ * Events of a group are written under its write lock, so their IDs increase in the order they were applied.
+ * The group is kept as a plain ID so the history outlives the group.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_events", indexes = {
+        @Index(name = "idx_ledger_events_group", columnList = "group_id, id")
+})
+@Data
+public class LedgerEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ledger_event_id")
+    @TableGenerator(name = "ledger_event_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_id",
+            pkColumnValue = "ledger_events", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "group_id", nullable = false, updatable = false)
+    private Long groupId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private LedgerEventType type;
+
+    // The expense that caused the event, if any
+    @Column(name = "expense_id", updatable = false)
+    private Long expenseId;
+
+    // Net change per user ID; positive when the user is owed more
+    @ElementCollection
+    @CollectionTable(name = "ledger_event_deltas", joinColumns = @JoinColumn(name = "event_id"))
+    @MapKeyColumn(name = "user_id")
+    @Column(name = "amount", nullable = false)
+    private Map<Long, BigDecimal> deltas = new HashMap<>();
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
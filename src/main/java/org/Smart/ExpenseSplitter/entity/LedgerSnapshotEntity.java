@@ -0,0 +1,47 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Net positions of a group after every ledger event up to {@code lastEventId}.
+ * Replaying a group starts from its latest snapshot instead of its first event.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_snapshots", indexes = {
+        @Index(name = "idx_ledger_snapshots_group", columnList = "group_id, last_event_id")
+})
+@Data
+public class LedgerSnapshotEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ledger_snapshot_id")
+    @TableGenerator(name = "ledger_snapshot_id", table = "id_generators", pkColumnName = "name", valueColumnName = "next_id",
+            pkColumnValue = "ledger_snapshots", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "group_id", nullable = false, updatable = false)
+    private Long groupId;
+
+    // 0 when the snapshot precedes every event of the group
+    @Column(name = "last_event_id", nullable = false, updatable = false)
+    private Long lastEventId;
+
+    @ElementCollection
+    @CollectionTable(name = "ledger_snapshot_positions", joinColumns = @JoinColumn(name = "snapshot_id"))
+    @MapKeyColumn(name = "user_id")
+    @Column(name = "amount", nullable = false)
+    private Map<Long, BigDecimal> positions = new HashMap<>();
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
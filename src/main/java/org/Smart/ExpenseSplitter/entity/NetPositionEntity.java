@@ -0,0 +1,38 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.math.BigDecimal;
+
+/**
+ * Running net position of a user inside a group.
+ * A positive amount means the user is owed money, a negative amount means the user owes money.
+ * The pairwise {@link BalanceEntity} rows of a group are derived from these positions.
+ */
+@Entity
+@Table(name = "net_positions")
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class NetPositionEntity extends BaseEntity {
+
+    @EmbeddedId
+    private NetPositionId id;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @MapsId("groupId")
+    @JoinColumn(name = "group_id", nullable = false)
+    @JsonIgnore
+    private GroupEntity group;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @MapsId("userId")
+    @JoinColumn(name = "user_id", nullable = false)
+    @JsonIgnore
+    private UserEntity user;
+}
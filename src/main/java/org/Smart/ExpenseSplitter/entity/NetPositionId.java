@@ -0,0 +1,18 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class NetPositionId implements Serializable {
+
+    private Long groupId;  // Foreign key to GroupEntity
+    private Long userId;   // Foreign key to the user whose position is tracked
+}
@@ -0,0 +1,32 @@
+package org.Smart.ExpenseSplitter.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Totals of a user's balances across every group, kept up to date with each balance write.
+ * Rows are written with atomic SQL increments, so concurrent writes from different groups never conflict.
+ */
+@Entity
+@Table(name = "user_balance_summaries")
+@Data
+public class UserBalanceSummaryEntity {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // What the other users owe this user
+    @Column(name = "total_owed", nullable = false)
+    private BigDecimal totalOwed;
+
+    // What this user owes the other users
+    @Column(name = "total_owing", nullable = false)
+    private BigDecimal totalOwing;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
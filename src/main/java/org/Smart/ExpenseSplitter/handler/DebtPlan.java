@@ -0,0 +1,16 @@
+package org.Smart.ExpenseSplitter.handler;
+
+import org.Smart.ExpenseSplitter.type.SettlementStrategy;
+
+import java.util.List;
+
+/**
+ * Transfers that settle the debts of a group, with the strategy that produced them.
+ * {@code strategy} is GREEDY when the exact solver was requested but exceeded its limits.
+ */
+public record DebtPlan(
+        SettlementStrategy requested,
+        SettlementStrategy strategy,
+        List<Transaction> transactions
+) {
+}
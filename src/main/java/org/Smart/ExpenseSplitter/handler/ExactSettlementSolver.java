@@ -0,0 +1,154 @@
+package org.Smart.ExpenseSplitter.handler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimum-transfer debt settlement over net positions in cents.
+ * A group of k users whose positions add up to zero can always be settled with k - 1 transfers,
+ * so the fewest transfers come from splitting the users into as many zero-sum subsets as possible.
+ * Users with equal and opposite positions are paired first, which never loses optimality; the rest
+ * are partitioned with a dynamic program over subsets, in O(m * 2^m) time for m remaining users,
+ * and every subset is then settled by {@link SettlementEngine}.
+ * <p>
+ * The solver gives up, returning null, when too many users remain or when it runs out of its
+ * CPU time budget; callers fall back to the greedy settlement.
+ */
+public final class ExactSettlementSolver {
+
+    // The subset tables take 9 * 2^m bytes, 36 MB at this limit, and are allocated before the budget is checked
+    public static final int MAX_MEMBERS = 22;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // The budget is checked once per this many subsets
+    private static final int BUDGET_CHECK_INTERVAL = 1 << 12;
+
+    private ExactSettlementSolver() {
+    }
+
+    /**
+     * Computes the settlement with the fewest transfers.
+     *
+     * @param netCents    net position of each user index in cents; positive when the user is owed money
+     * @param maxMembers  the most users left after pairing that the subset search accepts, at most {@link #MAX_MEMBERS}
+     * @param budgetNanos the CPU time the search may use
+     * @return the settlement plan, expressed in user indices, or null if the limits were exceeded
+     */
+    public static SettlementPlan solve(long[] netCents, int maxMembers, long budgetNanos) {
+        long deadline = cpuTime() + budgetNanos;
+        int n = netCents.length;
+
+        int[] from = new int[Math.max(0, n - 1)];
+        int[] to = new int[from.length];
+        long[] amounts = new long[from.length];
+        int size = 0;
+
+        // Step 1: pair every debtor with a creditor owed exactly the same amount, in index order
+        Map<Long, ArrayDeque<Integer>> creditorsByAmount = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (netCents[i] > 0) {
+                creditorsByAmount.computeIfAbsent(netCents[i], amount -> new ArrayDeque<>()).add(i);
+            }
+        }
+
+        boolean[] paired = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            if (netCents[i] >= 0) continue;
+
+            ArrayDeque<Integer> creditors = creditorsByAmount.get(-netCents[i]);
+            if (creditors != null && !creditors.isEmpty()) {
+                int creditor = creditors.poll();
+                paired[i] = true;
+                paired[creditor] = true;
+                from[size] = i;
+                to[size] = creditor;
+                amounts[size] = -netCents[i];
+                size++;
+            }
+        }
+
+        // Step 2: the users left to partition
+        int m = 0;
+        int[] rest = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (netCents[i] != 0 && !paired[i]) {
+                rest[m++] = i;
+            }
+        }
+        if (m > Math.min(maxMembers, MAX_MEMBERS)) {
+            return null;
+        }
+        if (m == 0) {
+            return new SettlementPlan(from, to, amounts, size);
+        }
+
+        // Step 3: zeroSubsets[mask] is the most zero-sum subsets a chain of removals from mask can close
+        int full = (1 << m) - 1;
+        long[] sums = new long[full + 1];
+        byte[] zeroSubsets = new byte[full + 1];
+
+        for (int mask = 1; mask <= full; mask++) {
+            if ((mask & (BUDGET_CHECK_INTERVAL - 1)) == 0 && cpuTime() > deadline) {
+                return null;
+            }
+
+            sums[mask] = sums[mask & (mask - 1)] + netCents[rest[Integer.numberOfTrailingZeros(mask)]];
+
+            int best = 0;
+            for (int bits = mask; bits != 0; bits &= bits - 1) {
+                best = Math.max(best, zeroSubsets[mask ^ (bits & -bits)]);
+            }
+            zeroSubsets[mask] = (byte) (sums[mask] == 0 ? best + 1 : best);
+        }
+
+        // Step 4: walk an optimal chain back down, settling each subset between two zero-sum masks
+        int mask = full;
+        int subsetEnd = full;
+        while (mask != 0) {
+            int target = sums[mask] == 0 ? zeroSubsets[mask] - 1 : zeroSubsets[mask];
+            int next = mask;
+            for (int bits = mask; bits != 0; bits &= bits - 1) {
+                next = mask ^ (bits & -bits);
+                if (zeroSubsets[next] == target) break;
+            }
+            mask = next;
+
+            if (sums[mask] == 0) {
+                size = settleSubset(netCents, rest, subsetEnd ^ mask, from, to, amounts, size);
+                subsetEnd = mask;
+            }
+        }
+
+        return new SettlementPlan(from, to, amounts, size);
+    }
+
+    // Settles the users of one subset greedily and appends the transfers to the plan
+    private static int settleSubset(long[] netCents, int[] rest, int subset,
+                                    int[] from, int[] to, long[] amounts, int size) {
+        int[] members = new int[Integer.bitCount(subset)];
+        long[] positions = new long[members.length];
+        int k = 0;
+        for (int bits = subset; bits != 0; bits &= bits - 1) {
+            members[k] = rest[Integer.numberOfTrailingZeros(bits)];
+            positions[k] = netCents[members[k]];
+            k++;
+        }
+
+        SettlementPlan plan = SettlementEngine.settle(positions);
+        for (int i = 0; i < plan.size(); i++) {
+            from[size] = members[plan.from()[i]];
+            to[size] = members[plan.to()[i]];
+            amounts[size] = plan.amounts()[i];
+            size++;
+        }
+        return size;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
@@ -0,0 +1,127 @@
+package org.Smart.ExpenseSplitter.handler;
+
+/**
+ * Greedy debt settlement over primitive arrays of net positions in cents.
+ * The largest remaining creditor is repeatedly matched with the smallest remaining debtor.
+ * Both heaps replicate the sift order of {@link java.util.PriorityQueue}, so the transfers match
+ * the ones produced by the queue-based implementation, ties included.
+ * Apart from the heaps and the plan, which are sized up front, settling allocates nothing.
+ */
+public final class SettlementEngine {
+
+    private SettlementEngine() {
+    }
+
+    /**
+     * Computes the transfers that settle the given net positions.
+     *
+     * @param netCents net position of each user index in cents; positive when the user is owed money
+     * @return the settlement plan, expressed in user indices
+     */
+    public static SettlementPlan settle(long[] netCents) {
+        int n = netCents.length;
+        // Creditors are keyed by the negated credit so the min-heap yields the largest creditor first
+        IndexHeap creditors = new IndexHeap(n);
+        // Debtors are keyed by the owed amount so the min-heap yields the smallest debtor first
+        IndexHeap debtors = new IndexHeap(n);
+
+        for (int i = 0; i < n; i++) {
+            if (netCents[i] > 0) {
+                creditors.offer(i, -netCents[i]);
+            } else if (netCents[i] < 0) {
+                debtors.offer(i, -netCents[i]);
+            }
+        }
+
+        // Every transfer retires at least one creditor or debtor
+        int capacity = Math.max(0, creditors.size + debtors.size - 1);
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        long[] amounts = new long[capacity];
+        int size = 0;
+
+        while (creditors.size > 0 && debtors.size > 0) {
+            int creditor = creditors.peekIndex();
+            long credit = -creditors.peekKey();
+            creditors.poll();
+
+            int debtor = debtors.peekIndex();
+            long debt = debtors.peekKey();
+            debtors.poll();
+
+            long amount = Math.min(credit, debt);
+            from[size] = debtor;
+            to[size] = creditor;
+            amounts[size] = amount;
+            size++;
+
+            if (credit > amount) {
+                creditors.offer(creditor, -(credit - amount));
+            }
+
+            if (debt > amount) {
+                debtors.offer(debtor, debt - amount);
+            }
+        }
+
+        return new SettlementPlan(from, to, amounts, size);
+    }
+
+    /**
+     * Binary min-heap of (user index, key) pairs stored in two parallel arrays.
+     */
+    private static final class IndexHeap {
+        private final int[] indices;
+        private final long[] keys;
+        private int size;
+
+        IndexHeap(int capacity) {
+            indices = new int[capacity];
+            keys = new long[capacity];
+        }
+
+        int peekIndex() {
+            return indices[0];
+        }
+
+        long peekKey() {
+            return keys[0];
+        }
+
+        void offer(int index, long key) {
+            int k = size++;
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (key >= keys[parent]) break;
+                indices[k] = indices[parent];
+                keys[k] = keys[parent];
+                k = parent;
+            }
+            indices[k] = index;
+            keys[k] = key;
+        }
+
+        void poll() {
+            int n = --size;
+            if (n == 0) return;
+
+            int index = indices[n];
+            long key = keys[n];
+            int k = 0;
+            int half = n >>> 1;
+            while (k < half) {
+                int child = (k << 1) + 1;
+                int right = child + 1;
+                if (right < n && keys[child] > keys[right]) {
+                    child = right;
+                }
+                if (key <= keys[child]) break;
+                indices[k] = indices[child];
+                keys[k] = keys[child];
+                k = child;
+            }
+            indices[k] = index;
+            keys[k] = key;
+        }
+    }
+}
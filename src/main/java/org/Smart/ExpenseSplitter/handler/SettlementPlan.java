@@ -0,0 +1,27 @@
+package org.Smart.ExpenseSplitter.handler;
+
+import org.Smart.ExpenseSplitter.util.MoneyUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transfers produced by {@link SettlementEngine}, held as parallel primitive arrays.
+ * Entry {@code i < size} moves {@code amounts[i]} cents from user index {@code from[i]} to user index {@code to[i]}.
+ */
+public record SettlementPlan(int[] from, int[] to, long[] amounts, int size) {
+
+    /**
+     * Materializes the plan as {@link Transaction} objects.
+     *
+     * @param userIds the user ID of every index the plan was computed for
+     * @return the transactions of the plan, in the order they were produced
+     */
+    public List<Transaction> toTransactions(long[] userIds) {
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(new Transaction(userIds[from[i]], userIds[to[i]], MoneyUtils.fromCents(amounts[i])));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,151 @@
+package org.Smart.ExpenseSplitter.handler;
+
+import org.Smart.ExpenseSplitter.type.SplitType;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Splits an amount in cents between participants so that the shares always add up to the amount.
+ * Equal and weighted splits round every share down, then hand the leftover cents out one at a time
+ * to the participants with the largest rounding remainders, lower indices first on ties; for an
+ * equal split these are simply the first participants. Callers pass the participants in a fixed
+ * order (by user ID) so the same expense always splits the same way.
+ * Everything is computed on long arrays sized once per split.
+ */
+public final class SplitEngine {
+
+    // Percentages carry two decimals, so a complete split adds up to 100.00
+    public static final long PERCENT_TOTAL = 10_000;
+
+    private SplitEngine() {
+    }
+
+    /**
+     * Splits the amount according to the split type.
+     *
+     * @param totalCents   the amount to split, in cents
+     * @param type         how the amount is split
+     * @param participants the number of participants
+     * @param values       per participant: the share in cents for EXACT, the percentage in hundredths of a percent
+     *                     for PERCENTAGE, the weight in hundredths for SHARES; ignored for EQUAL
+     * @return the share of each participant in cents
+     * @throws IllegalArgumentException if the values do not describe a valid split of the amount
+     */
+    public static long[] split(long totalCents, SplitType type, int participants, long[] values) {
+        if (participants <= 0) {
+            throw new IllegalArgumentException("At least one participant is required");
+        }
+        if (totalCents < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        if (type != SplitType.EQUAL && (values == null || values.length != participants)) {
+            throw new IllegalArgumentException("One split value is required per participant");
+        }
+
+        return switch (type) {
+            case EQUAL -> equal(totalCents, participants);
+            case EXACT -> exact(totalCents, values);
+            case PERCENTAGE -> {
+                if (sum(values) != PERCENT_TOTAL) {
+                    throw new IllegalArgumentException("Percentages must add up to 100");
+                }
+                yield weighted(totalCents, values);
+            }
+            case SHARES -> weighted(totalCents, values);
+        };
+    }
+
+    public static long[] equal(long totalCents, int participants) {
+        long[] shares = new long[participants];
+        long base = totalCents / participants;
+        long leftover = totalCents % participants;
+
+        for (int i = 0; i < participants; i++) {
+            shares[i] = i < leftover ? base + 1 : base;
+        }
+        return shares;
+    }
+
+    public static long[] exact(long totalCents, long[] amounts) {
+        if (sum(amounts) != totalCents) {
+            throw new IllegalArgumentException("Exact amounts must add up to the expense amount");
+        }
+        return amounts.clone();
+    }
+
+    public static long[] weighted(long totalCents, long[] weights) {
+        int n = weights.length;
+        long weightSum = sum(weights);
+        if (weightSum == 0) {
+            throw new IllegalArgumentException("At least one split value must be greater than zero");
+        }
+
+        long[] shares = new long[n];
+        long[] remainders = new long[n];
+        long allocated = 0;
+        for (int i = 0; i < n; i++) {
+            long product;
+            try {
+                product = Math.multiplyExact(totalCents, weights[i]);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Split values are too large for the amount");
+            }
+            shares[i] = product / weightSum;
+            remainders[i] = product % weightSum;
+            allocated += shares[i];
+        }
+
+        // Fewer than n cents are left, one each for the largest remainders
+        int leftover = (int) (totalCents - allocated);
+        if (leftover > 0) {
+            int[] order = largestRemainders(remainders, weightSum);
+            for (int i = 0; i < leftover; i++) {
+                shares[order[i]]++;
+            }
+        }
+        return shares;
+    }
+
+    // Indices ordered by remainder descending, then by index ascending
+    private static int[] largestRemainders(long[] remainders, long weightSum) {
+        int n = remainders.length;
+
+        // Remainders are below weightSum, so when weightSum * n fits in a long each remainder and its
+        // index can be packed into one key and the keys sorted as primitives
+        if (weightSum <= Long.MAX_VALUE / n) {
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = remainders[i] * n + (n - 1 - i);
+            }
+            Arrays.sort(keys);
+
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = n - 1 - (int) (keys[n - 1 - i] % n);
+            }
+            return order;
+        }
+
+        return IntStream.range(0, n).boxed()
+                .sorted(Comparator.<Integer>comparingLong(i -> remainders[i]).reversed().thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Split values must not be negative");
+            }
+            try {
+                sum = Math.addExact(sum, value);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Split values are too large");
+            }
+        }
+        return sum;
+    }
+}
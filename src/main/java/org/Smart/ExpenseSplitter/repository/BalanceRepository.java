@@ -3,24 +3,45 @@ package org.Smart.ExpenseSplitter.repository;
 import org.Smart.ExpenseSplitter.entity.BalanceEntity;
 import org.Smart.ExpenseSplitter.entity.BalanceId;
 import org.Smart.ExpenseSplitter.entity.UserEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 
 public interface BalanceRepository extends JpaRepository<BalanceEntity, Long> {
 
+    @EntityGraph(attributePaths = {"user", "owesTo"})
     Optional<BalanceEntity> findById(BalanceId balanceId);
 
+    @EntityGraph(attributePaths = {"user", "owesTo"})
     Page<BalanceEntity> findByGroupId(Long groupId, Pageable pageable);
 
     List<BalanceEntity> findByGroupId(Long groupId);
 
+    @EntityGraph(attributePaths = {"user", "owesTo"})
     Page<BalanceEntity> findByUserId(Long userId, Pageable pageable);
 
+    /**
+     * Finds the balances owed by a user that come after a keyset position,
+     * ordered by creation time, group and creditor. No count query is issued.
+     */
+    @EntityGraph(attributePaths = {"user", "owesTo"})
+    @Query("select b from BalanceEntity b where b.id.userId = :userId " +
+            "and (b.createdAt > :createdAt or (b.createdAt = :createdAt and " +
+            "(b.id.groupId > :groupId or (b.id.groupId = :groupId and b.id.owesTo > :owesTo)))) " +
+            "order by b.createdAt, b.id.groupId, b.id.owesTo")
+    List<BalanceEntity> findByUserIdAfter(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("groupId") Long groupId, @Param("owesTo") Long owesTo, Limit limit);
+
+    @EntityGraph(attributePaths = {"user", "owesTo"})
     Page<BalanceEntity> findByOwesTo(UserEntity owesTo, Pageable pageable);
 
     void deleteByGroupId(Long groupId);
@@ -0,0 +1,21 @@
+package org.Smart.ExpenseSplitter.repository;
+
+import org.Smart.ExpenseSplitter.entity.CounterpartyBalanceEntity;
+import org.Smart.ExpenseSplitter.entity.CounterpartyBalanceId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for reading {@link CounterpartyBalanceEntity} entities.
+ * Writes go through {@link org.Smart.ExpenseSplitter.service.BalanceSummaryService}.
+ */
+@Repository
+public interface CounterpartyBalanceRepository extends JpaRepository<CounterpartyBalanceEntity, CounterpartyBalanceId> {
+
+    // Counterparties the user has an outstanding balance with, settled pairs are skipped
+    @Query("select c from CounterpartyBalanceEntity c where c.id.userId = :userId and c.amount <> 0 order by c.id.counterpartyId")
+    List<CounterpartyBalanceEntity> findOutstandingByUserId(Long userId);
+}
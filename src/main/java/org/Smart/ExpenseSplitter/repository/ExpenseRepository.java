@@ -1,11 +1,21 @@
 package org.Smart.ExpenseSplitter.repository;
 
 import org.Smart.ExpenseSplitter.entity.ExpenseEntity;
+import org.Smart.ExpenseSplitter.entity.GroupEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Repository interface for managing {@link ExpenseEntity} entities.
  * Provides methods for querying expenses by associated group or user.
@@ -20,7 +30,63 @@ public interface ExpenseRepository extends JpaRepository<ExpenseEntity, Long> {
      * @param pageable the pagination information
      * @return a {@link Page} of {@link ExpenseEntity} objects related to the specified group
      */
+    @EntityGraph(attributePaths = {"group", "group.owner", "payer"})
     Page<ExpenseEntity> findByGroupId(Long groupId, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"group", "group.owner", "payer"})
     Page<ExpenseEntity> findByPayerId(Long payerId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"group", "group.owner", "payer"})
+    Optional<ExpenseEntity> findDetailById(Long expenseId);
+
+    /**
+     * Finds the expenses of a group that come after a keyset position, ordered by creation time and ID.
+     * Unlike {@link #findByGroupId(Long, Pageable)} no count query is issued and the cost does not grow with depth.
+     *
+     * @param groupId   the ID of the group
+     * @param createdAt creation time of the last expense already returned
+     * @param id        ID of the last expense already returned
+     * @param limit     maximum number of expenses to return
+     * @return the next expenses of the group
+     */
+    @EntityGraph(attributePaths = {"group", "group.owner", "payer"})
+    @Query("select e from ExpenseEntity e where e.group.id = :groupId " +
+            "and (e.createdAt > :createdAt or (e.createdAt = :createdAt and e.id > :id)) " +
+            "order by e.createdAt, e.id")
+    List<ExpenseEntity> findByGroupIdAfter(@Param("groupId") Long groupId, @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id, Limit limit);
+
+    @EntityGraph(attributePaths = {"group", "group.owner", "payer"})
+    @Query("select e from ExpenseEntity e where e.payer.id = :payerId " +
+            "and (e.createdAt > :createdAt or (e.createdAt = :createdAt and e.id > :id)) " +
+            "order by e.createdAt, e.id")
+    List<ExpenseEntity> findByPayerIdAfter(@Param("payerId") Long payerId, @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id, Limit limit);
+
+    /**
+     * Initializes the participants of already loaded expenses with a single query.
+     *
+     * @param expenses the expenses whose participants should be loaded
+     * @return the same expenses, with their participants initialized
+     */
+    @Query("select distinct e from ExpenseEntity e left join fetch e.participants where e in :expenses")
+    List<ExpenseEntity> fetchParticipants(@Param("expenses") Collection<ExpenseEntity> expenses);
+
+    /**
+     * Initializes the participants of every expense of the given groups with a single query.
+     *
+     * @param groups the groups whose expenses' participants should be loaded
+     * @return the expenses of the groups, with their participants initialized
+     */
+    @Query("select distinct e from ExpenseEntity e left join fetch e.participants where e.group in :groups")
+    List<ExpenseEntity> fetchParticipantsByGroups(@Param("groups") Collection<GroupEntity> groups);
+
+    /**
+     * Finds the ID of the group an expense belongs to without loading the expense.
+     *
+     * @param expenseId the ID of the expense
+     * @return the ID of the expense's group, or empty if the expense does not exist
+     */
+    @Query("select e.group.id from ExpenseEntity e where e.id = :expenseId")
+    Optional<Long> findGroupIdById(@Param("expenseId") Long expenseId);
 }
@@ -7,8 +7,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -21,5 +24,33 @@ public interface GroupRepository extends JpaRepository<GroupEntity, Long> {
 
     GroupEntity findByName(String name);
 
+    @EntityGraph(attributePaths = "owner")
     Page<GroupEntity> findByOwner(UserEntity user, Pageable pageable);
+
+    /**
+     * Initializes the owner and members of already loaded groups with a single query.
+     *
+     * @param groups the groups to initialize
+     * @return the same groups, with their owner and members initialized
+     */
+    @Query("select distinct g from GroupEntity g join fetch g.owner left join fetch g.members where g in :groups")
+    List<GroupEntity> fetchOwnerAndMembers(@Param("groups") Collection<GroupEntity> groups);
+
+    @Query("select distinct g from GroupEntity g left join fetch g.expenses e left join fetch e.payer where g in :groups")
+    List<GroupEntity> fetchExpensesWithPayer(@Param("groups") Collection<GroupEntity> groups);
+
+    @Query("select distinct g from GroupEntity g left join fetch g.balances b left join fetch b.user left join fetch b.owesTo where g in :groups")
+    List<GroupEntity> fetchBalancesWithUsers(@Param("groups") Collection<GroupEntity> groups);
+
+    @Query("select g.owner.id from GroupEntity g where g.id = :groupId")
+    Optional<Long> findOwnerId(@Param("groupId") Long groupId);
+
+    /**
+     * Finds the IDs of the members of a group without loading the member entities.
+     *
+     * @param groupId the ID of the group
+     * @return the IDs of the group's members, excluding the owner
+     */
+    @Query("select m.id from GroupEntity g join g.members m where g.id = :groupId")
+    List<Long> findMemberIds(@Param("groupId") Long groupId);
 }
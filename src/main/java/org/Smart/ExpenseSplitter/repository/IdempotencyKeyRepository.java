@@ -0,0 +1,23 @@
+package org.Smart.ExpenseSplitter.repository;
+
+import org.Smart.ExpenseSplitter.entity.IdempotencyKeyEntity;
+import org.Smart.ExpenseSplitter.entity.IdempotencyKeyId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository interface for managing {@link IdempotencyKeyEntity} entities.
+ */
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, IdempotencyKeyId> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKeyEntity k where k.createdAt < :createdAt")
+    int deleteCreatedBefore(LocalDateTime createdAt);
+}
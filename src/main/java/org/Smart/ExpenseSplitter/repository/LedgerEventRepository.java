@@ -0,0 +1,33 @@
+package org.Smart.ExpenseSplitter.repository;
+
+import org.Smart.ExpenseSplitter.entity.LedgerEventEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing {@link LedgerEventEntity} entities.
+ * Events are only ever inserted.
+ */
+@Repository
+public interface LedgerEventRepository extends JpaRepository<LedgerEventEntity, Long> {
+
+    /**
+     * Sums the deltas of the events of a group after the given event, per user.
+     *
+     * @param groupId the ID of the group
+     * @param afterId the ID of the last event already accounted for
+     * @return rows of (user ID, summed delta)
+     */
+    @Query("select key(d), sum(value(d)) from LedgerEventEntity e join e.deltas d " +
+            "where e.groupId = :groupId and e.id > :afterId group by key(d)")
+    List<Object[]> sumDeltasAfter(Long groupId, Long afterId);
+
+    long countByGroupIdAndIdGreaterThan(Long groupId, Long afterId);
+
+    @Query("select max(e.id) from LedgerEventEntity e where e.groupId = :groupId")
+    Optional<Long> findLastId(Long groupId);
+}
@@ -0,0 +1,22 @@
+package org.Smart.ExpenseSplitter.repository;
+
+import org.Smart.ExpenseSplitter.entity.LedgerSnapshotEntity;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for managing {@link LedgerSnapshotEntity} entities.
+ */
+@Repository
+public interface LedgerSnapshotRepository extends JpaRepository<LedgerSnapshotEntity, Long> {
+
+    @EntityGraph(attributePaths = "positions")
+    Optional<LedgerSnapshotEntity> findFirstByGroupIdOrderByLastEventIdDesc(Long groupId);
+
+    @Query("select max(s.lastEventId) from LedgerSnapshotEntity s where s.groupId = :groupId")
+    Optional<Long> findLastEventId(Long groupId);
+}
@@ -0,0 +1,26 @@
+package org.Smart.ExpenseSplitter.repository;
+
+import org.Smart.ExpenseSplitter.entity.NetPositionEntity;
+import org.Smart.ExpenseSplitter.entity.NetPositionId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for managing {@link NetPositionEntity} entities.
+ * Provides access to the per-group net-position ledger.
+ */
+@Repository
+public interface NetPositionRepository extends JpaRepository<NetPositionEntity, NetPositionId> {
+
+    /**
+     * Finds the net positions of every user in a group.
+     *
+     * @param groupId the ID of the group
+     * @return the net positions recorded for the group
+     */
+    List<NetPositionEntity> findByGroupId(Long groupId);
+
+    boolean existsByGroupId(Long groupId);
+}
@@ -0,0 +1,13 @@
+package org.Smart.ExpenseSplitter.repository;
+
+import org.Smart.ExpenseSplitter.entity.UserBalanceSummaryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for reading {@link UserBalanceSummaryEntity} entities.
+ * Writes go through {@link org.Smart.ExpenseSplitter.service.BalanceSummaryService}.
+ */
+@Repository
+public interface UserBalanceSummaryRepository extends JpaRepository<UserBalanceSummaryEntity, Long> {
+}
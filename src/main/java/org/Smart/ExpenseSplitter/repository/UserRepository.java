@@ -1,7 +1,11 @@
 package org.Smart.ExpenseSplitter.repository;
 
 import org.Smart.ExpenseSplitter.entity.UserEntity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -28,4 +32,15 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
      * @return an Optional containing the found UserEntity, or empty if no user is found
      */
     Optional<UserEntity> findByEmail(String email);
+
+    /**
+     * Find a page of the members of a group.
+     *
+     * @param groupId  the ID of the group
+     * @param pageable pagination and sorting of the members
+     * @return a page of the group's members
+     */
+    @Query(value = "select u from UserEntity u join u.joinedGroups g where g.id = :groupId",
+            countQuery = "select count(u) from UserEntity u join u.joinedGroups g where g.id = :groupId")
+    Page<UserEntity> findMembersByGroupId(@Param("groupId") Long groupId, Pageable pageable);
 }
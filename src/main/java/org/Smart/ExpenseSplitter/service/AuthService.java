@@ -1,27 +1,34 @@
 package org.Smart.ExpenseSplitter.service;
 
+import jakarta.persistence.EntityManager;
 import org.Smart.ExpenseSplitter.entity.UserEntity;
 import org.Smart.ExpenseSplitter.exception.UserNotFoundException;
 import org.Smart.ExpenseSplitter.repository.UserRepository;
+import org.hibernate.Session;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Service
 public class AuthService implements UserDetailsService {
     private final UserRepository userRepository;
+    private final EntityManager entityManager;
 
-    public AuthService(UserRepository userRepository) {
+    public AuthService(UserRepository userRepository, EntityManager entityManager) {
         this.userRepository = userRepository;
+        this.entityManager = entityManager;
     }
 
+    @Transactional(readOnly = true)
     public boolean userExists(String username) {
-        return userRepository.findByUsername(username).isPresent();
+        return loadByUsername(username).isPresent();
     }
 
     public UserEntity getUserById(Long userId) {
@@ -29,8 +36,9 @@ public class AuthService implements UserDetailsService {
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
     }
 
+    @Transactional(readOnly = true)
     public Optional<UserEntity> findByUsername(String username) {
-        Optional<UserEntity> user = userRepository.findByUsername(username);
+        Optional<UserEntity> user = loadByUsername(username);
         if (user.isEmpty()) {
             throw new UsernameNotFoundException("User not found");
         }
@@ -38,8 +46,9 @@ public class AuthService implements UserDetailsService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        Optional<UserEntity> user = userRepository.findByUsername(username);
+        Optional<UserEntity> user = loadByUsername(username);
 
         if (user.isEmpty()) {
             throw new UsernameNotFoundException("User not found");
@@ -51,9 +60,29 @@ public class AuthService implements UserDetailsService {
                 .build();
     }
 
+    /**
+     * Returns the ID of the authenticated user from the token claims,
+     * falling back to a lookup by username for tokens without the claim.
+     */
+    public Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user && user.userId() != null) {
+            return user.userId();
+        }
+        return getCurrentUser().getId();
+    }
+
+    @Transactional(readOnly = true)
     public UserEntity getCurrentUser() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         return findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
     }
+
+    // Username is the natural ID of UserEntity, so repeated lookups are served from the second-level cache
+    private Optional<UserEntity> loadByUsername(String username) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(UserEntity.class)
+                .loadOptional(username);
+    }
 }
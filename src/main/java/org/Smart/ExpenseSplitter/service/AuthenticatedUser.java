@@ -0,0 +1,19 @@
+package org.Smart.ExpenseSplitter.service;
+
+import java.security.Principal;
+import java.time.Instant;
+
+/**
+ * Principal of a request authenticated with a JWT, built from the verified token claims.
+ *
+ * @param userId    the ID of the user, null for tokens issued before the claim existed
+ * @param username  the username (token subject)
+ * @param expiresAt when the token expires
+ */
+public record AuthenticatedUser(Long userId, String username, Instant expiresAt) implements Principal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
@@ -1,18 +1,31 @@
 package org.Smart.ExpenseSplitter.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.Smart.ExpenseSplitter.dto.CursorPageDTO;
 import org.Smart.ExpenseSplitter.dto.balance.BalanceResponseDTO;
 import org.Smart.ExpenseSplitter.entity.BalanceEntity;
 import org.Smart.ExpenseSplitter.entity.BalanceId;
 import org.Smart.ExpenseSplitter.entity.GroupEntity;
+import org.Smart.ExpenseSplitter.entity.NetPositionEntity;
+import org.Smart.ExpenseSplitter.entity.NetPositionId;
 import org.Smart.ExpenseSplitter.entity.UserEntity;
 import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
-import org.Smart.ExpenseSplitter.exception.UserNotFoundException;
+import org.Smart.ExpenseSplitter.handler.DebtPlan;
+import org.Smart.ExpenseSplitter.handler.SettlementEngine;
 import org.Smart.ExpenseSplitter.handler.Transaction;
-import org.Smart.ExpenseSplitter.handler.UserBalance;
 import org.Smart.ExpenseSplitter.repository.BalanceRepository;
 import org.Smart.ExpenseSplitter.repository.GroupRepository;
+import org.Smart.ExpenseSplitter.repository.NetPositionRepository;
 import org.Smart.ExpenseSplitter.repository.UserRepository;
+import org.Smart.ExpenseSplitter.type.LedgerEventType;
+import org.Smart.ExpenseSplitter.type.SettlementStrategy;
+import org.Smart.ExpenseSplitter.util.KeysetCursor;
+import org.Smart.ExpenseSplitter.util.MoneyUtils;
 import org.apache.coyote.BadRequestException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -21,6 +34,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
@@ -28,18 +42,48 @@ import java.util.stream.Collectors;
 public class BalanceService {
 
     private final BalanceRepository balanceRepository;
+    private final NetPositionRepository netPositionRepository;
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
     private final AuthService userService;
     private final GroupService groupService;
-
-    public BalanceService(BalanceRepository balanceRepository, GroupRepository groupRepository,
-                          UserRepository userRepository, AuthService userService, GroupService groupService) {
+    private final GroupWriteLock groupWriteLock;
+    private final LedgerService ledgerService;
+    private final BalanceSummaryService balanceSummaryService;
+    private final SettlementPlanner settlementPlanner;
+
+    private final Timer simplifyTimer;
+    private final DistributionSummary simplifyGroupSize;
+    private final DistributionSummary simplifyTransactions;
+
+    public BalanceService(BalanceRepository balanceRepository, NetPositionRepository netPositionRepository,
+                          GroupRepository groupRepository, UserRepository userRepository,
+                          AuthService userService, GroupService groupService, GroupWriteLock groupWriteLock,
+                          LedgerService ledgerService, BalanceSummaryService balanceSummaryService,
+                          SettlementPlanner settlementPlanner, MeterRegistry meterRegistry) {
         this.balanceRepository = balanceRepository;
+        this.netPositionRepository = netPositionRepository;
         this.groupRepository = groupRepository;
         this.userRepository = userRepository;
         this.userService = userService;
         this.groupService = groupService;
+        this.groupWriteLock = groupWriteLock;
+        this.ledgerService = ledgerService;
+        this.balanceSummaryService = balanceSummaryService;
+        this.settlementPlanner = settlementPlanner;
+
+        this.simplifyTimer = Timer.builder("debts.simplify")
+                .description("Debt simplification of one group")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.simplifyGroupSize = DistributionSummary.builder("debts.simplify.group.size")
+                .description("Users with a net position in the simplified group")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.simplifyTransactions = DistributionSummary.builder("debts.simplify.transactions")
+                .description("Transactions produced by the simplification")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     // Fetch balances for a group with pagination
@@ -51,46 +95,78 @@ public class BalanceService {
 
     // Fetch balances for the current user with pagination
     public Page<BalanceEntity> getBalancesForCurrentUser(Pageable pageable) {
-        UserEntity currentUser = userService.getCurrentUser();
-        return balanceRepository.findByUserId(currentUser.getId(), pageable);
+        return balanceRepository.findByUserId(userService.getCurrentUserId(), pageable);
     }
 
-    // Update the balance (either create or update the existing balance between users)
+    /**
+     * Applies per-user deltas to the net positions of a group and records them as one ledger event.
+     * Only the rows of the users present in {@code deltas} are read and written.
+     *
+     * @param groupId   The ID of the group.
+     * @param type      What caused the change, recorded in the ledger.
+     * @param expenseId The expense that caused the change, or null.
+     * @param deltas    Net change per user ID; positive when the user is owed more, negative when the user owes more.
+     */
+    @Timed(value = "balances.update", histogram = true)
     @Transactional
-    public void updateBalance(Long groupId, Long fromUserId, Long toUserId, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Amount must be greater than zero");
-        }
+    public void applyNetDeltas(Long groupId, LedgerEventType type, Long expenseId, Map<Long, BigDecimal> deltas) {
+        if (deltas.isEmpty()) return;
 
-        BalanceId balanceId = new BalanceId(groupId, fromUserId, toUserId);
-        Optional<BalanceEntity> optionalBalance = balanceRepository.findById(balanceId);
+        groupWriteLock.lock(groupId);
+        if (!netPositionRepository.existsByGroupId(groupId)) {
+            seedNetPositions(groupId);
+        }
 
-        BalanceEntity balance;
-        if (optionalBalance.isPresent()) {
-            balance = optionalBalance.get();
-            balance.setAmount(balance.getAmount().add(amount));
-        } else {
-            GroupEntity group = groupRepository.findById(groupId)
-                    .orElseThrow(() -> new GroupNotFoundException("Group not found"));
+        List<NetPositionId> ids = deltas.keySet().stream()
+                .map(userId -> new NetPositionId(groupId, userId))
+                .collect(Collectors.toList());
+        Map<Long, NetPositionEntity> positions = netPositionRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(position -> position.getId().getUserId(), position -> position));
+
+        List<NetPositionEntity> changed = new ArrayList<>();
+        Map<Long, BigDecimal> applied = new HashMap<>();
+        for (Map.Entry<Long, BigDecimal> delta : deltas.entrySet()) {
+            if (delta.getValue().signum() == 0) continue;
+            applied.put(delta.getKey(), delta.getValue());
+
+            NetPositionEntity position = positions.get(delta.getKey());
+            if (position == null) {
+                position = newNetPosition(groupId, delta.getKey(), delta.getValue());
+            } else {
+                position.setAmount(position.getAmount().add(delta.getValue()));
+            }
+            changed.add(position);
+        }
 
-            UserEntity fromUser = userRepository.findById(fromUserId)
-                    .orElseThrow(() -> new UserNotFoundException("From user not found"));
+        netPositionRepository.saveAll(changed);
 
-            UserEntity toUser = userRepository.findById(toUserId)
-                    .orElseThrow(() -> new UserNotFoundException("To user not found"));
+        if (!applied.isEmpty()) {
+            ledgerService.record(groupId, type, expenseId, applied);
+        }
+    }
 
-            balance = new BalanceEntity();
-            balance.setId(balanceId);
-            balance.setGroup(group);
-            balance.setUser(fromUser);
-            balance.setOwesTo(toUser);
-            balance.setAmount(amount);
+    // Fetch current user's balances as DTO after a keyset cursor, ordered by (created_at, group, creditor)
+    @Transactional(readOnly = true)
+    public CursorPageDTO<BalanceResponseDTO> scrollUserBalancesAsDTO(String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor, 2);
+        List<BalanceEntity> balances = balanceRepository.findByUserIdAfter(
+                userService.getCurrentUserId(), position.createdAt(), position.key(0), position.key(1), Limit.of(size + 1));
+
+        // One extra row is fetched to tell whether another slice follows
+        boolean hasNext = balances.size() > size;
+        List<BalanceEntity> slice = hasNext ? balances.subList(0, size) : balances;
+
+        String nextCursor = null;
+        if (hasNext) {
+            BalanceEntity last = slice.get(slice.size() - 1);
+            nextCursor = KeysetCursor.of(last.getCreatedAt(), last.getId().getGroupId(), last.getId().getOwesTo()).encode();
         }
 
-        balanceRepository.save(balance);
+        return new CursorPageDTO<>(slice.stream().map(BalanceResponseDTO::new).toList(), nextCursor, hasNext);
     }
 
     // Fetch current user's balances as DTO
+    @Transactional(readOnly = true)
     public Page<BalanceResponseDTO> getUserBalancesAsDTO(Pageable pageable) {
         Page<BalanceEntity> userBalances = getBalancesForCurrentUser(pageable);
 
@@ -101,8 +177,10 @@ public class BalanceService {
         return new PageImpl<>(groupResponseDTOs, userBalances.getPageable(), userBalances.getTotalElements());
     }
 
+    @Timed(value = "balances.settle", histogram = true)
     @Transactional
     public BalanceEntity settleBalance(Long groupId, Long fromUserId, Long toUserId, BigDecimal amount) throws BadRequestException {
+        groupWriteLock.lock(groupId);
 
         BalanceId balanceId = new BalanceId(groupId, fromUserId, toUserId);
         Optional<BalanceEntity> optionalBalance = balanceRepository.findById(balanceId);
@@ -126,91 +204,165 @@ public class BalanceService {
             balance.setAmount(updatedAmount);
             balanceRepository.save(balance);
         }
+        balanceSummaryService.recordBalanceChanges(Map.of(balanceId, amount.negate()));
+
+        // Keep the net-position ledger in step with the settled balance
+        Map<Long, BigDecimal> deltas = new HashMap<>();
+        deltas.put(fromUserId, amount);
+        deltas.put(toUserId, amount.negate());
+        applyNetDeltas(groupId, LedgerEventType.SETTLEMENT, null, deltas);
 
         return balance;
     }
 
+    @Timed(value = "debts.optimize", histogram = true)
     @Transactional
     public void optimizeDebts(Long groupId) {
-        // Step 1: Fetch all balances for the group
-        List<BalanceEntity> balances = balanceRepository.findByGroupId(groupId);
-        if (balances.isEmpty()) return;
+        groupWriteLock.lock(groupId);
 
-        // Step 2: Calculate net balances
-        Map<Long, BigDecimal> netBalances = new HashMap<>();
+        // Step 1: Load the net positions of the group
+        Map<Long, BigDecimal> netBalances = getNetBalances(groupId);
 
-        for (BalanceEntity balance : balances) {
-            Long fromUser = balance.getId().getUserId();
-            Long toUser = balance.getId().getOwesTo();
-            BigDecimal amount = balance.getAmount();
+        // Step 2: Simplify debts using the net balances, with the strategy configured for the group
+        long start = System.nanoTime();
+        List<Transaction> transactions = settlementPlanner.plan(netBalances, getSettlementStrategy(groupId)).transactions();
+        simplifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        simplifyGroupSize.record(netBalances.size());
+        simplifyTransactions.record(transactions.size());
 
-            // Subtract amount from the payer's net balance
-            netBalances.put(fromUser, netBalances.getOrDefault(fromUser, BigDecimal.ZERO).subtract(amount));
+        // Step 3: Reconcile the stored balances with the optimized transactions,
+        // touching only the rows that actually changed
+        Map<BalanceId, BalanceEntity> currentBalances = balanceRepository.findByGroupId(groupId).stream()
+                .collect(Collectors.toMap(BalanceEntity::getId, balance -> balance));
 
-            // Add amount to the payee's net balance
-            netBalances.put(toUser, netBalances.getOrDefault(toUser, BigDecimal.ZERO).add(amount));
+        List<BalanceEntity> changed = new ArrayList<>();
+        Map<BalanceId, BigDecimal> summaryChanges = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            BalanceId balanceId = new BalanceId(groupId, transaction.getFromUser(), transaction.getToUser());
+            BalanceEntity balance = currentBalances.remove(balanceId);
+
+            if (balance == null) {
+                balance = new BalanceEntity();
+                balance.setId(balanceId);
+                balance.setGroup(groupRepository.getReferenceById(groupId));
+                balance.setUser(userRepository.getReferenceById(transaction.getFromUser()));
+                balance.setOwesTo(userRepository.getReferenceById(transaction.getToUser()));
+                summaryChanges.put(balanceId, transaction.getAmount());
+            } else if (balance.getAmount().compareTo(transaction.getAmount()) == 0) {
+                continue;
+            } else {
+                summaryChanges.put(balanceId, transaction.getAmount().subtract(balance.getAmount()));
+            }
+
+            balance.setAmount(transaction.getAmount());
+            changed.add(balance);
         }
+        for (BalanceEntity removed : currentBalances.values()) {
+            summaryChanges.put(removed.getId(), removed.getAmount().negate());
+        }
+
+        balanceRepository.deleteAll(currentBalances.values());
+        balanceRepository.saveAll(changed);
+        balanceSummaryService.recordBalanceChanges(summaryChanges);
+    }
 
+    /**
+     * Computes the plan that would settle the group's current net positions, without applying it.
+     * A group without net positions yet is planned from its pairwise balances; seeding them is left
+     * to the writers, which hold the group's write lock.
+     *
+     * @param groupId The ID of the group.
+     * @return The transfers and the strategy that produced them.
+     */
+    @Transactional(readOnly = true)
+    public DebtPlan getSettlementPlan(Long groupId) {
+        List<NetPositionEntity> positions = netPositionRepository.findByGroupId(groupId);
+        Map<Long, BigDecimal> netBalances = positions.isEmpty()
+                ? netBalances(balanceRepository.findByGroupId(groupId))
+                : toNetBalances(positions);
+
+        return settlementPlanner.plan(netBalances, getSettlementStrategy(groupId));
+    }
 
-        // Step 3: Simplify debts using the net balances
-        List<Transaction> transactions = simplifyDebts(netBalances);
+    // Groups are read through the second-level cache, so this rarely reaches the database
+    private SettlementStrategy getSettlementStrategy(Long groupId) {
+        return groupRepository.findById(groupId)
+                .map(GroupEntity::getSettlementStrategy)
+                .orElse(SettlementStrategy.GREEDY);
+    }
 
-        // Step 4: Update the database with optimized transactions
-        balanceRepository.deleteByGroupId(groupId); // Clear existing balances
+    // Net balance per user ID for a group, read from the net-position ledger; callers hold the group's write lock
+    public Map<Long, BigDecimal> getNetBalances(Long groupId) {
+        List<NetPositionEntity> positions = netPositionRepository.findByGroupId(groupId);
+        if (positions.isEmpty()) {
+            positions = seedNetPositions(groupId);
+        }
+        return toNetBalances(positions);
+    }
 
-        for (Transaction transaction : transactions) {
-            BalanceEntity balance = new BalanceEntity();
-            BalanceId balanceId = new BalanceId(groupId, transaction.getFromUser(), transaction.getToUser());
+    private static Map<Long, BigDecimal> toNetBalances(List<NetPositionEntity> positions) {
+        Map<Long, BigDecimal> netBalances = new HashMap<>();
+        for (NetPositionEntity position : positions) {
+            netBalances.put(position.getId().getUserId(), position.getAmount());
+        }
+        return netBalances;
+    }
 
-            GroupEntity group = groupService.getGroupById(groupId);
-            UserEntity fromUser = userService.getUserById(transaction.getFromUser());
-            UserEntity toUser = userService.getUserById(transaction.getToUser());
+    // Build the net positions of a group that predates the ledger from its pairwise balances,
+    // and snapshot them as the starting point of the group's ledger
+    private List<NetPositionEntity> seedNetPositions(Long groupId) {
+        Map<Long, BigDecimal> netBalances = netBalances(balanceRepository.findByGroupId(groupId));
 
-            balance.setId(balanceId);
-            balance.setGroup(group);
-            balance.setUser(fromUser);
-            balance.setOwesTo(toUser);
-            balance.setAmount(transaction.getAmount());
+        List<NetPositionEntity> positions = netBalances.entrySet().stream()
+                .map(entry -> newNetPosition(groupId, entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        List<NetPositionEntity> saved = netPositionRepository.saveAll(positions);
 
-            balanceRepository.save(balance);
+        if (!saved.isEmpty()) {
+            ledgerService.baseline(groupId);
         }
+        return saved;
     }
 
-    private List<Transaction> simplifyDebts(Map<Long, BigDecimal> netBalances) {
-        List<Transaction> transactions = new ArrayList<>();
-        PriorityQueue<UserBalance> creditors = new PriorityQueue<>(Comparator.comparing(UserBalance::getBalance).reversed());
-        PriorityQueue<UserBalance> debtors = new PriorityQueue<>(Comparator.comparing(UserBalance::getBalance));
+    // Net balance per user ID from pairwise balances; positive when the user is owed money
+    static Map<Long, BigDecimal> netBalances(Collection<BalanceEntity> balances) {
+        Map<Long, BigDecimal> netBalances = new HashMap<>();
 
-        // Separate creditors and debtors
-        for (Map.Entry<Long, BigDecimal> entry : netBalances.entrySet()) {
-            Long userId = entry.getKey();
-            BigDecimal balance = entry.getValue();
+        for (BalanceEntity balance : balances) {
+            Long fromUser = balance.getId().getUserId();
+            Long toUser = balance.getId().getOwesTo();
+            BigDecimal amount = balance.getAmount();
 
-            if (balance.compareTo(BigDecimal.ZERO) > 0) {
-                creditors.add(new UserBalance(userId, balance));
-            } else if (balance.compareTo(BigDecimal.ZERO) < 0) {
-                debtors.add(new UserBalance(userId, balance.abs()));
-            }
+            // Subtract amount from the payer's net balance
+            netBalances.merge(fromUser, amount.negate(), BigDecimal::add);
+
+            // Add amount to the payee's net balance
+            netBalances.merge(toUser, amount, BigDecimal::add);
         }
 
-        // Match debtors with creditors
-        while (!creditors.isEmpty() && !debtors.isEmpty()) {
-            UserBalance creditor = creditors.poll();
-            UserBalance debtor = debtors.poll();
+        return netBalances;
+    }
 
-            assert debtor != null;
-            BigDecimal amount = creditor.getBalance().min(debtor.getBalance());
-            transactions.add(new Transaction(debtor.getUserId(), creditor.getUserId(), amount));
+    private NetPositionEntity newNetPosition(Long groupId, Long userId, BigDecimal amount) {
+        NetPositionEntity position = new NetPositionEntity();
+        position.setId(new NetPositionId(groupId, userId));
+        position.setGroup(groupRepository.getReferenceById(groupId));
+        position.setUser(userRepository.getReferenceById(userId));
+        position.setAmount(amount);
+        return position;
+    }
 
-            if (creditor.getBalance().compareTo(amount) > 0) {
-                creditors.add(new UserBalance(creditor.getUserId(), creditor.getBalance().subtract(amount)));
-            }
+    static List<Transaction> simplifyDebts(Map<Long, BigDecimal> netBalances) {
+        long[] userIds = new long[netBalances.size()];
+        long[] netCents = new long[netBalances.size()];
 
-            if (debtor.getBalance().compareTo(amount) > 0) {
-                debtors.add(new UserBalance(debtor.getUserId(), debtor.getBalance().subtract(amount)));
-            }
+        int i = 0;
+        for (Map.Entry<Long, BigDecimal> entry : netBalances.entrySet()) {
+            userIds[i] = entry.getKey();
+            netCents[i] = MoneyUtils.toCents(entry.getValue());
+            i++;
         }
 
-        return transactions;
+        return SettlementEngine.settle(netCents).toTransactions(userIds);
     }
 }
@@ -0,0 +1,127 @@
+package org.Smart.ExpenseSplitter.service;
+
+import org.Smart.ExpenseSplitter.dto.balance.CounterpartyBalanceDTO;
+import org.Smart.ExpenseSplitter.dto.balance.UserBalanceSummaryDTO;
+import org.Smart.ExpenseSplitter.entity.BalanceId;
+import org.Smart.ExpenseSplitter.entity.UserBalanceSummaryEntity;
+import org.Smart.ExpenseSplitter.repository.CounterpartyBalanceRepository;
+import org.Smart.ExpenseSplitter.repository.UserBalanceSummaryRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Maintains the per-user summary of balances across groups: the totals owed and owing,
+ * and the net balance with each counterparty.
+ * Balance writes report their changes here in the same transaction. The summary rows are
+ * incremented in SQL, in key order, so writers of different groups never overwrite each other.
+ */
+@Service
+public class BalanceSummaryService {
+
+    private static final String UPSERT_SUMMARY =
+            "insert into user_balance_summaries (user_id, total_owed, total_owing, updated_at) values (?, ?, ?, ?) " +
+                    "on duplicate key update total_owed = total_owed + values(total_owed), " +
+                    "total_owing = total_owing + values(total_owing), updated_at = values(updated_at)";
+    private static final String UPSERT_COUNTERPARTY =
+            "insert into counterparty_balances (user_id, counterparty_id, amount) values (?, ?, ?) " +
+                    "on duplicate key update amount = amount + values(amount)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserBalanceSummaryRepository summaryRepository;
+    private final CounterpartyBalanceRepository counterpartyRepository;
+    private final AuthService userService;
+
+    public BalanceSummaryService(JdbcTemplate jdbcTemplate, UserBalanceSummaryRepository summaryRepository,
+                                 CounterpartyBalanceRepository counterpartyRepository, AuthService userService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.summaryRepository = summaryRepository;
+        this.counterpartyRepository = counterpartyRepository;
+        this.userService = userService;
+    }
+
+    /**
+     * Applies changes of pairwise balances to the summaries of both users of each pair.
+     *
+     * @param changes Change of the amount per balance; positive when the debtor owes more.
+     */
+    @Transactional
+    public void recordBalanceChanges(Map<BalanceId, BigDecimal> changes) {
+        // user ID -> {owed, owing}, and (user ID, counterparty ID) -> net, both sorted to lock rows in a fixed order
+        SortedMap<Long, BigDecimal[]> totals = new TreeMap<>();
+        SortedMap<List<Long>, BigDecimal> pairs = new TreeMap<>(
+                Comparator.<List<Long>, Long>comparing(pair -> pair.get(0)).thenComparing(pair -> pair.get(1)));
+
+        for (Map.Entry<BalanceId, BigDecimal> change : changes.entrySet()) {
+            BigDecimal amount = change.getValue();
+            if (amount.signum() == 0) continue;
+
+            Long debtor = change.getKey().getUserId();
+            Long creditor = change.getKey().getOwesTo();
+
+            BigDecimal[] debtorTotals = totals.computeIfAbsent(debtor, id -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            debtorTotals[1] = debtorTotals[1].add(amount);
+            BigDecimal[] creditorTotals = totals.computeIfAbsent(creditor, id -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            creditorTotals[0] = creditorTotals[0].add(amount);
+
+            pairs.merge(List.of(debtor, creditor), amount.negate(), BigDecimal::add);
+            pairs.merge(List.of(creditor, debtor), amount, BigDecimal::add);
+        }
+        if (totals.isEmpty()) return;
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> summaryRows = new ArrayList<>(totals.size());
+        totals.forEach((userId, amounts) -> summaryRows.add(new Object[]{userId, amounts[0], amounts[1], now}));
+
+        List<Object[]> counterpartyRows = new ArrayList<>(pairs.size());
+        pairs.forEach((pair, amount) -> counterpartyRows.add(new Object[]{pair.get(0), pair.get(1), amount}));
+
+        jdbcTemplate.batchUpdate(UPSERT_SUMMARY, summaryRows);
+        jdbcTemplate.batchUpdate(UPSERT_COUNTERPARTY, counterpartyRows);
+    }
+
+    /**
+     * Fetches the current user's balance summary across every group.
+     *
+     * @return The totals and the outstanding net balance with each counterparty.
+     */
+    @Transactional(readOnly = true)
+    public UserBalanceSummaryDTO getCurrentUserSummaryAsDTO() {
+        Long userId = userService.getCurrentUserId();
+
+        UserBalanceSummaryEntity summary = summaryRepository.findById(userId).orElse(null);
+        BigDecimal totalOwed = summary != null ? summary.getTotalOwed() : BigDecimal.ZERO;
+        BigDecimal totalOwing = summary != null ? summary.getTotalOwing() : BigDecimal.ZERO;
+
+        List<CounterpartyBalanceDTO> counterparties = counterpartyRepository.findOutstandingByUserId(userId).stream()
+                .map(balance -> new CounterpartyBalanceDTO(balance.getId().getCounterpartyId(), balance.getAmount()))
+                .toList();
+
+        return new UserBalanceSummaryDTO(totalOwed, totalOwing, totalOwed.subtract(totalOwing), counterparties);
+    }
+
+    // Builds the summaries from the balances table when they have never been populated
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (summaryRepository.count() > 0) return;
+
+        jdbcTemplate.update(
+                "insert into user_balance_summaries (user_id, total_owed, total_owing, updated_at) " +
+                        "select user_id, sum(owed), sum(owing), now() from (" +
+                        "select owes_to as user_id, amount as owed, 0 as owing from balances " +
+                        "union all select user_id, 0, amount from balances) b group by user_id");
+        jdbcTemplate.update(
+                "insert into counterparty_balances (user_id, counterparty_id, amount) " +
+                        "select user_id, counterparty_id, sum(amount) from (" +
+                        "select owes_to as user_id, user_id as counterparty_id, amount from balances " +
+                        "union all select user_id, owes_to, -amount from balances) b group by user_id, counterparty_id");
+    }
+}
@@ -0,0 +1,213 @@
+package org.Smart.ExpenseSplitter.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.Smart.ExpenseSplitter.dto.balance.BalanceRequestDTO;
+import org.Smart.ExpenseSplitter.dto.balance.BulkSettlementResultDTO;
+import org.Smart.ExpenseSplitter.dto.balance.SettlementOutcomeDTO;
+import org.Smart.ExpenseSplitter.entity.BalanceId;
+import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
+import org.Smart.ExpenseSplitter.type.LedgerEventType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Applies many settlements of one payer in a single transaction.
+ * The payer's balances in every requested group are read with one query, each settlement is checked
+ * against the running amounts, and the changed rows are written back with one UPDATE batch and one
+ * DELETE batch. Invalid settlements are reported and skipped, they do not abort the others.
+ * <p>
+ * Settlements are validated before the transaction starts, so its first read comes after the group locks
+ * and sees every optimization committed while it waited for them.
+ */
+@Service
+public class BulkSettlementService {
+
+    private static final String SELECT_BALANCES =
+            "select group_id, owes_to, amount from balances where user_id = ? and group_id in (%s)";
+    private static final String UPDATE_BALANCE =
+            "update balances set amount = ?, updated_at = ?, version = version + 1 " +
+                    "where group_id = ? and user_id = ? and owes_to = ?";
+    private static final String DELETE_BALANCE =
+            "delete from balances where group_id = ? and user_id = ? and owes_to = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BalanceService balanceService;
+    private final BalanceSummaryService balanceSummaryService;
+    private final GroupMembershipIndex membershipIndex;
+    private final GroupWriteLock groupWriteLock;
+    private final TransactionTemplate transactionTemplate;
+
+    public BulkSettlementService(JdbcTemplate jdbcTemplate, BalanceService balanceService,
+                                 BalanceSummaryService balanceSummaryService, GroupMembershipIndex membershipIndex,
+                                 GroupWriteLock groupWriteLock, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.balanceService = balanceService;
+        this.balanceSummaryService = balanceSummaryService;
+        this.membershipIndex = membershipIndex;
+        this.groupWriteLock = groupWriteLock;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Lists the groups of the settlements that pass validation, the ones whose balances must be
+     * optimized before they are settled. Runs outside a transaction.
+     *
+     * @param fromUserId  The ID of the paying user.
+     * @param settlements The requested settlements.
+     * @return The distinct IDs of the groups the user may settle in.
+     */
+    public Set<Long> getSettleableGroupIds(Long fromUserId, List<BalanceRequestDTO> settlements) {
+        Set<Long> groupIds = new LinkedHashSet<>();
+        for (BalanceRequestDTO settlement : settlements) {
+            if (validate(fromUserId, settlement) == null) {
+                groupIds.add(settlement.getGroupId());
+            }
+        }
+        return groupIds;
+    }
+
+    /**
+     * Settles balances owed by the user.
+     * Settlements of the same balance are applied in request order against the remaining amount.
+     * Must be called outside a transaction, the settlements commit on their own.
+     *
+     * @param fromUserId  The ID of the paying user.
+     * @param settlements The group, creditor and amount of each settlement.
+     * @return The outcome of every settlement, in request order.
+     */
+    @Timed(value = "balances.settle.bulk", histogram = true)
+    public BulkSettlementResultDTO settleBalances(Long fromUserId, List<BalanceRequestDTO> settlements) {
+        SettlementOutcomeDTO[] outcomes = new SettlementOutcomeDTO[settlements.size()];
+
+        // Step 1: Reject the settlements that cannot apply whatever the balances are
+        SortedSet<Long> groupIds = new TreeSet<>();
+        for (int i = 0; i < settlements.size(); i++) {
+            BalanceRequestDTO settlement = settlements.get(i);
+            String error = validate(fromUserId, settlement);
+            if (error != null) {
+                outcomes[i] = rejected(settlement, error);
+            } else {
+                groupIds.add(settlement.getGroupId());
+            }
+        }
+
+        return transactionTemplate.execute(status -> settleValid(fromUserId, settlements, outcomes, groupIds));
+    }
+
+    // Settles the settlements left without an outcome; the group locks are taken before anything is read
+    private BulkSettlementResultDTO settleValid(Long fromUserId, List<BalanceRequestDTO> settlements,
+                                               SettlementOutcomeDTO[] outcomes, SortedSet<Long> groupIds) {
+        // Step 2: Lock the groups together and read the payer's balances in all of them at once
+        Map<BalanceId, BigDecimal> current = new HashMap<>();
+        if (!groupIds.isEmpty()) {
+            groupWriteLock.lockAll(groupIds);
+
+            String placeholders = groupIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+            List<Object> args = new ArrayList<>(groupIds.size() + 1);
+            args.add(fromUserId);
+            args.addAll(groupIds);
+            jdbcTemplate.query(SELECT_BALANCES.formatted(placeholders), (ResultSet rs) -> {
+                current.put(new BalanceId(rs.getLong(1), fromUserId, rs.getLong(2)), rs.getBigDecimal(3));
+            }, args.toArray());
+        }
+
+        // Step 3: Apply the settlements to the running amounts
+        Map<BalanceId, BigDecimal> original = new HashMap<>(current);
+        Map<Long, Map<Long, BigDecimal>> groupDeltas = new TreeMap<>();
+        int settled = 0;
+        for (int i = 0; i < settlements.size(); i++) {
+            if (outcomes[i] != null) continue;
+
+            BalanceRequestDTO settlement = settlements.get(i);
+            BalanceId balanceId = new BalanceId(settlement.getGroupId(), fromUserId, settlement.getToUserId());
+            BigDecimal owed = current.get(balanceId);
+
+            if (owed == null || owed.signum() == 0) {
+                outcomes[i] = rejected(settlement, "No outstanding balance found with the specified user in this group.");
+                continue;
+            }
+            if (settlement.getAmount().compareTo(owed) > 0) {
+                outcomes[i] = rejected(settlement, "The settlement amount exceeds the owed amount.");
+                continue;
+            }
+
+            BigDecimal remaining = owed.subtract(settlement.getAmount());
+            current.put(balanceId, remaining);
+
+            Map<Long, BigDecimal> deltas = groupDeltas.computeIfAbsent(settlement.getGroupId(), id -> new HashMap<>());
+            deltas.merge(fromUserId, settlement.getAmount(), BigDecimal::add);
+            deltas.merge(settlement.getToUserId(), settlement.getAmount().negate(), BigDecimal::add);
+
+            outcomes[i] = new SettlementOutcomeDTO(settlement.getGroupId(), settlement.getToUserId(),
+                    settlement.getAmount(), true, remaining, null);
+            settled++;
+        }
+
+        // Step 4: Write back only the balances that changed
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        Map<BalanceId, BigDecimal> summaryChanges = new HashMap<>();
+        for (Map.Entry<BalanceId, BigDecimal> balance : current.entrySet()) {
+            BalanceId id = balance.getKey();
+            BigDecimal before = original.get(id);
+            if (before.compareTo(balance.getValue()) == 0) continue;
+
+            if (balance.getValue().signum() == 0) {
+                deletes.add(new Object[]{id.getGroupId(), id.getUserId(), id.getOwesTo()});
+            } else {
+                updates.add(new Object[]{balance.getValue(), now, id.getGroupId(), id.getUserId(), id.getOwesTo()});
+            }
+            summaryChanges.put(id, balance.getValue().subtract(before));
+        }
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE, updates);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_BALANCE, deletes);
+        }
+        balanceSummaryService.recordBalanceChanges(summaryChanges);
+
+        // Keep the net-position ledger of every group in step with its settled balances
+        groupDeltas.forEach((groupId, deltas) ->
+                balanceService.applyNetDeltas(groupId, LedgerEventType.SETTLEMENT, null, deltas));
+
+        return new BulkSettlementResultDTO(settled, settlements.size() - settled, Arrays.asList(outcomes));
+    }
+
+    private String validate(Long fromUserId, BalanceRequestDTO settlement) {
+        if (settlement.getGroupId() == null || settlement.getToUserId() == null || settlement.getAmount() == null) {
+            return "Group, user and amount are required.";
+        }
+        if (settlement.getAmount().signum() <= 0) {
+            return "Amount must be greater than zero.";
+        }
+        if (settlement.getToUserId().equals(fromUserId)) {
+            return "Cannot settle with yourself.";
+        }
+
+        try {
+            if (!membershipIndex.isMemberOrOwner(settlement.getGroupId(), fromUserId)) {
+                return "User is not joined to this group.";
+            }
+        } catch (GroupNotFoundException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    private static SettlementOutcomeDTO rejected(BalanceRequestDTO settlement, String error) {
+        return new SettlementOutcomeDTO(settlement.getGroupId(), settlement.getToUserId(), settlement.getAmount(),
+                false, null, error);
+    }
+}
@@ -0,0 +1,192 @@
+package org.Smart.ExpenseSplitter.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.Smart.ExpenseSplitter.dto.JsonResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Answers conditional GETs of group detail, expense detail and the current user's balances.
+ * The strong ETag of a response is derived from a version probe: one SQL statement reading the versions,
+ * counts and last IDs of the rows the response is built from, which changes whenever any of them is
+ * inserted, updated or deleted. A matching If-None-Match gets 304 without loading any entity, and a
+ * response whose probe has not changed since it was last built is served from its cached JSON.
+ * <p>
+ * The probe runs before the read, so a body is never older than its ETag; a write landing in between
+ * only costs the client one more full response on its next request.
+ */
+@Service
+public class ConditionalGetService {
+
+    // Group version (bumped by member changes too), then expenses and balances: inserts raise the last ID
+    // or timestamp, deletes lower the count, updates raise the version sum
+    private static final String SELECT_GROUP_VERSION =
+            "select g.version, e.expenses, e.last_expense, e.expense_versions, b.balances, b.balance_versions, b.last_update " +
+                    "from `groups` g, " +
+                    "(select count(*) as expenses, coalesce(max(id), 0) as last_expense, coalesce(sum(version), 0) as expense_versions " +
+                    "from expenses where group_id = ?) e, " +
+                    "(select count(*) as balances, coalesce(sum(version), 0) as balance_versions, max(updated_at) as last_update " +
+                    "from balances where group_id = ?) b " +
+                    "where g.id = ?";
+    private static final String SELECT_EXPENSE_VERSION =
+            "select e.version, g.version from expenses e join `groups` g on g.id = e.group_id where e.id = ?";
+    private static final String SELECT_USER_BALANCES_VERSION =
+            "select count(*), coalesce(sum(version), 0), max(updated_at) from balances where user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Resource and variant -> the last body built for it, with its ETag
+    private final Cache<String, CachedBody> bodies;
+
+    public ConditionalGetService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                 @Value("${app.conditional-get.cache-size:10000}") long cacheSize,
+                                 MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.bodies = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, bodies, "conditional.get.bodies");
+    }
+
+    /**
+     * Serves the detail of a group.
+     *
+     * @param groupId     The ID of the group.
+     * @param variant     Distinguishes representations of the same group, e.g. the requested fields.
+     * @param ifNoneMatch The If-None-Match header, or null.
+     * @param read        Builds the response when the client's and the cached copies are stale.
+     */
+    public ResponseEntity<?> groupDetail(Long groupId, String variant, String ifNoneMatch,
+                                         Supplier<ResponseEntity<JsonResponse>> read) {
+        return respond("groups/" + groupId + "?" + variant, SELECT_GROUP_VERSION,
+                new Object[]{groupId, groupId, groupId}, ifNoneMatch, read);
+    }
+
+    /**
+     * Serves the detail of an expense.
+     *
+     * @param expenseId   The ID of the expense.
+     * @param variant     Distinguishes representations of the same expense, e.g. the requested fields.
+     * @param ifNoneMatch The If-None-Match header, or null.
+     * @param read        Builds the response when the client's and the cached copies are stale.
+     */
+    public ResponseEntity<?> expenseDetail(Long expenseId, String variant, String ifNoneMatch,
+                                           Supplier<ResponseEntity<JsonResponse>> read) {
+        return respond("expenses/" + expenseId + "?" + variant, SELECT_EXPENSE_VERSION,
+                new Object[]{expenseId}, ifNoneMatch, read);
+    }
+
+    /**
+     * Serves a page of the balances a user owes.
+     *
+     * @param userId      The ID of the user.
+     * @param variant     Distinguishes the pages, e.g. the page number, size and sort.
+     * @param ifNoneMatch The If-None-Match header, or null.
+     * @param read        Builds the response when the client's and the cached copies are stale.
+     */
+    public ResponseEntity<?> userBalances(Long userId, String variant, String ifNoneMatch,
+                                          Supplier<ResponseEntity<JsonResponse>> read) {
+        return respond("balances/user/" + userId + "?" + variant, SELECT_USER_BALANCES_VERSION,
+                new Object[]{userId}, ifNoneMatch, read);
+    }
+
+    private ResponseEntity<?> respond(String resource, String probe, Object[] args, String ifNoneMatch,
+                                      Supplier<ResponseEntity<JsonResponse>> read) {
+        List<String> versions = jdbcTemplate.query(probe, (rs, rowNum) -> {
+            StringBuilder row = new StringBuilder();
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                row.append(Objects.toString(rs.getObject(i), "0")).append(',');
+            }
+            return row.toString();
+        }, args);
+        // A missing row is answered by the read itself, typically with 404
+        if (versions.isEmpty()) {
+            return read.get();
+        }
+
+        String etag = etag(resource, versions.get(0));
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+
+        CachedBody cached = bodies.getIfPresent(resource);
+        if (cached == null || !cached.etag().equals(etag)) {
+            ResponseEntity<JsonResponse> response = read.get();
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                return response;
+            }
+
+            cached = new CachedBody(etag, serialize(response.getBody()));
+            bodies.put(resource, cached);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cached.body());
+    }
+
+    private static String etag(String resource, String versions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(resource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(versions.getBytes(StandardCharsets.UTF_8));
+            return '"' + HexFormat.of().formatHex(digest.digest(), 0, 16) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("ETag cannot be computed", e);
+        }
+    }
+
+    // If-None-Match compares weakly, so a W/ prefix added by a proxy still matches
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) return true;
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private byte[] serialize(JsonResponse body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be serialized", e);
+        }
+    }
+
+    private record CachedBody(String etag, byte[] body) {
+    }
+}
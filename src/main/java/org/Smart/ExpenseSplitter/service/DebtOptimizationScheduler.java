@@ -0,0 +1,228 @@
+package org.Smart.ExpenseSplitter.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces debt optimization per group.
+ * Writes only mark their group dirty; dirty groups are optimized once per window in the background,
+ * however many expenses arrived in between. Reads that show the simplified balances optimize their
+ * dirty groups right away, before they open their own transaction; a read that finds the group already
+ * being optimized waits for that run to commit instead of reading the balances it is replacing.
+ * <p>
+ * The queue is kept in memory and mirrored in the dirty_groups table, written with the change and cleared
+ * with the optimization, so groups still dirty when the application stopped are queued again on startup.
+ */
+@Component
+public class DebtOptimizationScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DebtOptimizationScheduler.class);
+
+    // Keeps the time of the first change when the group is already dirty
+    private static final String INSERT_DIRTY_GROUP =
+            "insert into dirty_groups (group_id, dirty_since) values (?, ?) " +
+                    "on duplicate key update group_id = group_id";
+    private static final String DELETE_DIRTY_GROUP = "delete from dirty_groups where group_id = ?";
+    private static final String SELECT_DIRTY_GROUPS = "select group_id, dirty_since from dirty_groups";
+
+    private final BalanceService balanceService;
+    private final GroupMembershipIndex membershipIndex;
+    private final AuthService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Dirty group ID -> System.nanoTime() of the first write since its last optimization
+    private final Map<Long, Long> dirtySince = new ConcurrentHashMap<>();
+
+    // Group ID -> the optimization running for it, completed once it has committed
+    private final Map<Long, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final Timer scheduledLag;
+    private final Timer readLag;
+
+    public DebtOptimizationScheduler(BalanceService balanceService, GroupMembershipIndex membershipIndex,
+                                     AuthService userService, JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.balanceService = balanceService;
+        this.membershipIndex = membershipIndex;
+        this.userService = userService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Gauge.builder("debts.optimization.dirty.groups", dirtySince, Map::size)
+                .description("Groups waiting for debt optimization")
+                .register(meterRegistry);
+        Gauge.builder("debts.optimization.oldest.lag", this, scheduler -> scheduler.oldestLagSeconds())
+                .description("Time the longest waiting group has been dirty")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.scheduledLag = lagTimer(meterRegistry, "scheduled");
+        this.readLag = lagTimer(meterRegistry, "read");
+    }
+
+    /**
+     * Records the group as dirty in the surrounding transaction, and queues it for optimization once
+     * that transaction commits, so the background run sees the net positions written by it.
+     *
+     * @param groupId The ID of the group whose net positions changed.
+     */
+    public void markDirty(Long groupId) {
+        jdbcTemplate.update(INSERT_DIRTY_GROUP, groupId, Timestamp.valueOf(LocalDateTime.now()));
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dirtySince.putIfAbsent(groupId, System.nanoTime());
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dirtySince.putIfAbsent(groupId, System.nanoTime());
+            }
+        });
+    }
+
+    /**
+     * Optimizes the group now if it has pending changes, or waits for the optimization already running.
+     * Must be called outside a transaction, the optimization commits on its own.
+     *
+     * @param groupId The ID of the group about to be read.
+     */
+    public void ensureOptimized(Long groupId) {
+        // A run claims the group before taking its dirty entry, so checking them in this order never misses one
+        while (dirtySince.containsKey(groupId) || inFlight.containsKey(groupId)) {
+            CompletableFuture<Void> claim = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(groupId, claim);
+            if (running == null) {
+                optimizeClaimed(groupId, claim, readLag);
+                return;
+            }
+
+            // A failed run has queued the group again, so the loop retries it
+            boolean committed = running.handle((result, e) -> e == null).join();
+            if (committed) return;
+        }
+    }
+
+    /**
+     * Optimizes every dirty group the current user owns or belongs to.
+     */
+    public void ensureOptimizedForCurrentUser() {
+        if (dirtySince.isEmpty()) return;
+
+        Long userId = userService.getCurrentUserId();
+        for (Long groupId : new ArrayList<>(dirtySince.keySet())) {
+            if (isMemberOrOwner(groupId, userId)) {
+                ensureOptimized(groupId);
+            }
+        }
+    }
+
+    // Drains the groups that became dirty during the last window
+    @Scheduled(fixedDelayString = "${app.debt-optimization.window:2s}")
+    public void optimizeDirtyGroups() {
+        List<Long> groupIds = new ArrayList<>(dirtySince.keySet());
+        for (Long groupId : groupIds) {
+            // A read is already optimizing the group
+            CompletableFuture<Void> claim = new CompletableFuture<>();
+            if (inFlight.putIfAbsent(groupId, claim) != null) continue;
+
+            try {
+                optimizeClaimed(groupId, claim, scheduledLag);
+            } catch (RuntimeException e) {
+                log.warn("Debt optimization of group {} failed, retrying in the next window", groupId, e);
+            }
+        }
+    }
+
+    // Runs the optimization of a group claimed in inFlight, then releases the claim and wakes its waiters
+    private void optimizeClaimed(Long groupId, CompletableFuture<Void> claim, Timer lag) {
+        try {
+            Long since = dirtySince.remove(groupId);
+            if (since != null) {
+                optimize(groupId, since, lag);
+            }
+            claim.complete(null);
+        } catch (RuntimeException e) {
+            claim.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(groupId, claim);
+        }
+    }
+
+    // Queues the groups left dirty by the previous run of the application
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadDirtyGroups() {
+        LocalDateTime now = LocalDateTime.now();
+        long nanoTime = System.nanoTime();
+        jdbcTemplate.query(SELECT_DIRTY_GROUPS, rs -> {
+            Duration age = Duration.between(rs.getTimestamp("dirty_since").toLocalDateTime(), now);
+            long since = nanoTime - Math.max(0, age.toNanos());
+            dirtySince.merge(rs.getLong("group_id"), since, Math::min);
+        });
+    }
+
+    private void optimize(Long groupId, long since, Timer lag) {
+        try {
+            // The marker goes with the optimization, a change committed after it marks the group again
+            transactionTemplate.executeWithoutResult(status -> {
+                balanceService.optimizeDebts(groupId);
+                jdbcTemplate.update(DELETE_DIRTY_GROUP, groupId);
+            });
+            lag.record(System.nanoTime() - since, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            // Keep the group queued with its original timestamp so the next window retries it
+            dirtySince.merge(groupId, since, Math::min);
+            throw e;
+        }
+    }
+
+    private boolean isMemberOrOwner(Long groupId, Long userId) {
+        try {
+            return membershipIndex.isMemberOrOwner(groupId, userId);
+        } catch (GroupNotFoundException e) {
+            dirtySince.remove(groupId);
+            jdbcTemplate.update(DELETE_DIRTY_GROUP, groupId);
+            return false;
+        }
+    }
+
+    private double oldestLagSeconds() {
+        long now = System.nanoTime();
+        return dirtySince.values().stream()
+                .mapToLong(since -> now - since)
+                .max()
+                .orElse(0) / 1e9;
+    }
+
+    private static Timer lagTimer(MeterRegistry meterRegistry, String trigger) {
+        return Timer.builder("debts.optimization.lag")
+                .description("Time from the first write to a group until its debts were optimized")
+                .tag("trigger", trigger)
+                .register(meterRegistry);
+    }
+}
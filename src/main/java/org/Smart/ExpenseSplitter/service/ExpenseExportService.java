@@ -0,0 +1,261 @@
+package org.Smart.ExpenseSplitter.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.Smart.ExpenseSplitter.type.ExpenseImportFormat;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the full ledger of a group: every expense with its participants, then the current balances.
+ * Rows are read through streaming result sets and written as they arrive, so memory use does not
+ * grow with the group. Both queries run in one read-only transaction, which reads a consistent
+ * snapshot without locking rows, so writers of the group are never blocked by an export.
+ * <p>
+ * The CSV expense rows carry the columns read by {@link ExpenseImportService}.
+ */
+@Service
+public class ExpenseExportService {
+
+    private static final String SELECT_EXPENSES =
+            "select e.id, e.description, e.amount, e.expense_type, e.payer_id, e.created_at, eu.user_id, " +
+                    "coalesce(e.split_type, 'EQUAL'), sv.split_value " +
+                    "from expenses e left join expense_users eu on eu.expense_id = e.id " +
+                    "left join expense_split_values sv on sv.expense_id = e.id and sv.user_id = eu.user_id " +
+                    "where e.group_id = ? order by e.id";
+    private static final String SELECT_BALANCES =
+            "select user_id, owes_to, amount from balances where group_id = ? order by user_id, owes_to";
+
+    private static final String CSV_HEADER =
+            "record,id,createdAt,description,amount,expenseType,payerId,participantIds,fromUserId,toUserId,splitType,splitValues";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    public ExpenseExportService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper) {
+        // Integer.MIN_VALUE makes the MySQL driver stream rows one at a time instead of buffering the result
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the expenses and balances of the group to the stream.
+     *
+     * @param groupId The ID of the group to export.
+     * @param format  NDJSON (one object per line) or CSV (one header row, then one row per record).
+     * @param output  The stream to write to; it is flushed but not closed.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void exportGroup(Long groupId, ExpenseImportFormat format, OutputStream output) throws IOException {
+        RecordWriter writer = format == ExpenseImportFormat.CSV
+                ? new CsvRecordWriter(output)
+                : new NdjsonRecordWriter(objectMapper.getFactory().createGenerator(output));
+
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                streamExpenses(groupId, writer);
+                streamingJdbcTemplate.query(SELECT_BALANCES, (ResultSet rs) -> {
+                    long fromUserId = rs.getLong(1);
+                    long toUserId = rs.getLong(2);
+                    BigDecimal amount = rs.getBigDecimal(3);
+                    write(() -> writer.balance(fromUserId, toUserId, amount));
+                }, groupId);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    // Expense rows arrive once per participant, ordered by expense ID, and are folded into one record each
+    private void streamExpenses(Long groupId, RecordWriter writer) {
+        ExpenseRecord current = new ExpenseRecord();
+
+        streamingJdbcTemplate.query(SELECT_EXPENSES, (ResultSet rs) -> {
+            long id = rs.getLong(1);
+            if (current.id != id) {
+                if (current.id != 0) {
+                    write(() -> writer.expense(current));
+                }
+                current.reset(id, rs.getString(2), rs.getBigDecimal(3), rs.getString(4), rs.getLong(5), rs.getTimestamp(6),
+                        rs.getString(8));
+            }
+
+            long participantId = rs.getLong(7);
+            if (!rs.wasNull()) {
+                current.participantIds.add(participantId);
+                BigDecimal splitValue = rs.getBigDecimal(9);
+                if (splitValue != null) {
+                    current.splitValues.add(splitValue);
+                }
+            }
+        }, groupId);
+
+        if (current.id != 0) {
+            write(() -> writer.expense(current));
+        }
+    }
+
+    private static void write(IOAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static final class ExpenseRecord {
+        long id;
+        String description;
+        BigDecimal amount;
+        String expenseType;
+        long payerId;
+        Timestamp createdAt;
+        String splitType;
+        final List<Long> participantIds = new ArrayList<>();
+        // Aligned with participantIds, empty for equal splits
+        final List<BigDecimal> splitValues = new ArrayList<>();
+
+        void reset(long id, String description, BigDecimal amount, String expenseType, long payerId, Timestamp createdAt,
+                   String splitType) {
+            this.id = id;
+            this.description = description;
+            this.amount = amount;
+            this.expenseType = expenseType;
+            this.payerId = payerId;
+            this.createdAt = createdAt;
+            this.splitType = splitType;
+            this.participantIds.clear();
+            this.splitValues.clear();
+        }
+    }
+
+    private interface RecordWriter {
+        void expense(ExpenseRecord expense) throws IOException;
+
+        void balance(long fromUserId, long toUserId, BigDecimal amount) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static final class NdjsonRecordWriter implements RecordWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRecordWriter(JsonGenerator generator) {
+            this.generator = generator;
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Records are separated by the explicit line breaks, not by Jackson's default space
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void expense(ExpenseRecord expense) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("record", "expense");
+            generator.writeNumberField("id", expense.id);
+            generator.writeStringField("createdAt", expense.createdAt.toLocalDateTime().toString());
+            generator.writeStringField("description", expense.description);
+            generator.writeNumberField("amount", expense.amount);
+            generator.writeStringField("expenseType", expense.expenseType);
+            generator.writeNumberField("payerId", expense.payerId);
+            generator.writeArrayFieldStart("participantIds");
+            for (Long participantId : expense.participantIds) {
+                generator.writeNumber(participantId);
+            }
+            generator.writeEndArray();
+            generator.writeStringField("splitType", expense.splitType);
+            if (!expense.splitValues.isEmpty()) {
+                generator.writeArrayFieldStart("splitValues");
+                for (BigDecimal splitValue : expense.splitValues) {
+                    generator.writeNumber(splitValue);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void balance(long fromUserId, long toUserId, BigDecimal amount) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("record", "balance");
+            generator.writeNumberField("fromUserId", fromUserId);
+            generator.writeNumberField("toUserId", toUserId);
+            generator.writeNumberField("amount", amount);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class CsvRecordWriter implements RecordWriter {
+
+        private final Writer writer;
+
+        CsvRecordWriter(OutputStream output) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            this.writer.write(CSV_HEADER);
+            this.writer.write('\n');
+        }
+
+        @Override
+        public void expense(ExpenseRecord expense) throws IOException {
+            String participantIds = expense.participantIds.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(";"));
+            String splitValues = expense.splitValues.stream()
+                    .map(BigDecimal::toPlainString)
+                    .collect(Collectors.joining(";"));
+            writer.write("expense," + expense.id + "," + expense.createdAt.toLocalDateTime() + ","
+                    + quote(expense.description) + "," + expense.amount.toPlainString() + "," + expense.expenseType + ","
+                    + expense.payerId + "," + participantIds + ",,," + expense.splitType + "," + splitValues + "\n");
+        }
+
+        @Override
+        public void balance(long fromUserId, long toUserId, BigDecimal amount) throws IOException {
+            writer.write("balance,,,," + amount.toPlainString() + ",,,," + fromUserId + "," + toUserId + ",,\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        // Quotes a field, doubling embedded quotes, when it contains a separator, a quote or a line break
+        private static String quote(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
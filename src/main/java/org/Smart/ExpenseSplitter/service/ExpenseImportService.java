@@ -0,0 +1,341 @@
+package org.Smart.ExpenseSplitter.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.Smart.ExpenseSplitter.dto.expense.ExpenseImportErrorDTO;
+import org.Smart.ExpenseSplitter.dto.expense.ExpenseImportResultDTO;
+import org.Smart.ExpenseSplitter.dto.expense.ExpenseRequestDTO;
+import org.Smart.ExpenseSplitter.entity.ExpenseEntity;
+import org.Smart.ExpenseSplitter.entity.GroupEntity;
+import org.Smart.ExpenseSplitter.repository.GroupRepository;
+import org.Smart.ExpenseSplitter.type.ExpenseImportFormat;
+import org.Smart.ExpenseSplitter.type.ExpenseType;
+import org.Smart.ExpenseSplitter.type.LedgerEventType;
+import org.Smart.ExpenseSplitter.util.MoneyUtils;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Imports expenses into a group from an NDJSON or CSV stream.
+ * Rows are parsed one line at a time and written with JDBC batches, so memory use depends on
+ * the batch size and the group size, not on the size of the stream. Balance changes are
+ * aggregated per user and applied once, and the group is queued for a single debt optimization.
+ * That last step runs in its own transaction, which takes the group write lock before it reads anything,
+ * so the lock is not held while the stream is read and the balances it changes are never older than it.
+ */
+@Service
+public class ExpenseImportService {
+
+    static final int BATCH_SIZE = 500;
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    // Required CSV columns, participantIds is a ';' separated list; the optional splitType and splitValues
+    // columns describe a non-equal split, splitValues being ';' separated in the order of participantIds
+    static final List<String> CSV_COLUMNS = List.of("description", "amount", "expenseType", "payerId", "participantIds");
+
+    private static final String INSERT_EXPENSE =
+            "insert into expenses (id, description, amount, expense_type, split_type, group_id, payer_id, created_at, updated_at, version) " +
+                    "values (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_PARTICIPANT =
+            "insert into expense_users (expense_id, user_id) values (?, ?)";
+    private static final String INSERT_SPLIT_VALUE =
+            "insert into expense_split_values (expense_id, user_id, split_value) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GroupService groupService;
+    private final GroupRepository groupRepository;
+    private final BalanceService balanceService;
+    private final DebtOptimizationScheduler debtOptimizationScheduler;
+    private final GroupWriteLock groupWriteLock;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate balanceTransaction;
+
+    public ExpenseImportService(JdbcTemplate jdbcTemplate, GroupService groupService, GroupRepository groupRepository,
+                               BalanceService balanceService, DebtOptimizationScheduler debtOptimizationScheduler,
+                               GroupWriteLock groupWriteLock, ObjectMapper objectMapper, EntityManager entityManager,
+                               PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.groupService = groupService;
+        this.groupRepository = groupRepository;
+        this.balanceService = balanceService;
+        this.debtOptimizationScheduler = debtOptimizationScheduler;
+        this.groupWriteLock = groupWriteLock;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.balanceTransaction = new TransactionTemplate(transactionManager);
+        this.balanceTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Imports every valid row of the stream into the group.
+     * Invalid rows are skipped and reported, they do not abort the import.
+     *
+     * @param groupId The ID of the group to import into.
+     * @param input   The NDJSON or CSV stream, one expense per line.
+     * @param format  The format of the stream.
+     * @return The number of imported and failed rows, with the first {@link #MAX_REPORTED_ERRORS} row errors.
+     * @throws IOException              if the stream cannot be read.
+     * @throws IllegalArgumentException if the CSV header is missing or lacks a required column.
+     */
+    @Transactional
+    public ExpenseImportResultDTO importExpenses(Long groupId, InputStream input, ExpenseImportFormat format) throws IOException {
+        GroupEntity group = groupService.getGroupById(groupId);
+        Set<Long> members = new HashSet<>(groupRepository.findMemberIds(groupId));
+        members.add(group.getOwner().getId());
+
+        Map<Long, Long> deltas = new HashMap<>();
+        List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+        List<ExpenseImportErrorDTO> errors = new ArrayList<>();
+        long imported = 0;
+        long failed = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<String> header = null;
+        long lineNumber = 0;
+        String line;
+
+        // Without a valid header no row can be read, so the whole import is rejected
+        if (format == ExpenseImportFormat.CSV) {
+            do {
+                line = reader.readLine();
+                lineNumber++;
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                throw new IllegalArgumentException("CSV header must contain the columns " + CSV_COLUMNS);
+            }
+            header = parseCsvHeader(line);
+        }
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+
+            try {
+                ExpenseRequestDTO row = format == ExpenseImportFormat.CSV
+                        ? parseCsvRow(header, line)
+                        : objectMapper.readValue(line, ExpenseRequestDTO.class);
+                validate(row, members);
+
+                ExpenseService.ExpenseSplit split = ExpenseService.resolveSplit(row);
+                ExpenseService.addSplitDeltas(deltas, row.getPayerId(), split);
+                batch.add(new ImportRow(row, split));
+            } catch (JsonProcessingException | IllegalArgumentException | ArithmeticException e) {
+                failed++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new ExpenseImportErrorDTO(lineNumber, e.getMessage()));
+                }
+            }
+
+            if (batch.size() == BATCH_SIZE) {
+                imported += insertBatch(groupId, batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            imported += insertBatch(groupId, batch);
+        }
+
+        // Inserting expense rows does not need the group lock, only the balance change does. This transaction
+        // has read the group already, so the change gets a fresh one that locks before it reads the net positions;
+        // it is the last step, and a failure in it still rolls back the inserted rows
+        if (imported > 0) {
+            balanceTransaction.executeWithoutResult(status -> {
+                groupWriteLock.lock(groupId);
+                balanceService.applyNetDeltas(groupId, LedgerEventType.IMPORT, null, ExpenseService.toAmounts(deltas));
+                debtOptimizationScheduler.markDirty(groupId);
+            });
+        }
+
+        return new ExpenseImportResultDTO(imported, failed, errors);
+    }
+
+    // Checks the fields of a parsed row, the split itself is checked when it is resolved
+    private void validate(ExpenseRequestDTO row, Set<Long> members) {
+        if (row.getDescription() == null || row.getDescription().isBlank()) {
+            throw new IllegalArgumentException("Description is required");
+        }
+        if (row.getAmount() == null || row.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than zero");
+        }
+        if (row.getExpenseType() == null) {
+            throw new IllegalArgumentException("Expense type is required");
+        }
+        ExpenseType.valueOf(row.getExpenseType());
+
+        if (row.getPayerId() == null || !members.contains(row.getPayerId())) {
+            throw new IllegalArgumentException("Payer is not a member of the group");
+        }
+        if (row.getParticipantIds() == null || row.getParticipantIds().isEmpty()) {
+            throw new IllegalArgumentException("At least one participant is required");
+        }
+
+        for (Long participantId : row.getParticipantIds()) {
+            if (participantId == null || !members.contains(participantId)) {
+                throw new IllegalArgumentException("Participant " + participantId + " is not a member of the group");
+            }
+        }
+    }
+
+    private record ImportRow(ExpenseRequestDTO request, ExpenseService.ExpenseSplit split) {
+    }
+
+    // Writes the expenses of the batch, their participants and their split values with one JDBC batch each
+    private int insertBatch(Long groupId, List<ImportRow> rows) {
+        long[] expenseIds = allocateExpenseIds(rows.size());
+
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_EXPENSE)) {
+                for (int i = 0; i < rows.size(); i++) {
+                    ExpenseRequestDTO row = rows.get(i).request();
+                    ExpenseService.ExpenseSplit split = rows.get(i).split();
+                    statement.setLong(1, expenseIds[i]);
+                    statement.setString(2, row.getDescription());
+                    statement.setBigDecimal(3, MoneyUtils.fromCents(split.amountCents()));
+                    statement.setString(4, row.getExpenseType());
+                    statement.setString(5, split.type().name());
+                    statement.setLong(6, groupId);
+                    statement.setLong(7, row.getPayerId());
+                    statement.setTimestamp(8, now);
+                    statement.setTimestamp(9, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_PARTICIPANT)) {
+                for (int i = 0; i < rows.size(); i++) {
+                    for (Long participantId : rows.get(i).split().participantIds()) {
+                        statement.setLong(1, expenseIds[i]);
+                        statement.setLong(2, participantId);
+                        statement.addBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+
+            if (rows.stream().anyMatch(row -> !row.split().values().isEmpty())) {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_SPLIT_VALUE)) {
+                    for (int i = 0; i < rows.size(); i++) {
+                        for (Map.Entry<Long, BigDecimal> value : rows.get(i).split().values().entrySet()) {
+                            statement.setLong(1, expenseIds[i]);
+                            statement.setLong(2, value.getKey());
+                            statement.setBigDecimal(3, value.getValue());
+                            statement.addBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            }
+
+            return rows.size();
+        });
+    }
+
+    // Draws IDs from the same pooled generator Hibernate uses for ExpenseEntity, so the ranges never overlap
+    private long[] allocateExpenseIds(int count) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator generator = (IdentifierGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(ExpenseEntity.class)
+                .getGenerator();
+
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = ((Number) generator.generate(session, null)).longValue();
+        }
+        return ids;
+    }
+
+    private List<String> parseCsvHeader(String line) {
+        List<String> header = parseCsvLine(line).stream().map(String::trim).toList();
+        if (!header.containsAll(CSV_COLUMNS)) {
+            throw new IllegalArgumentException("CSV header must contain the columns " + CSV_COLUMNS);
+        }
+        return header;
+    }
+
+    private ExpenseRequestDTO parseCsvRow(List<String> header, String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " columns but found " + values.size());
+        }
+
+        ExpenseRequestDTO row = new ExpenseRequestDTO();
+        for (int i = 0; i < header.size(); i++) {
+            String value = values.get(i).trim();
+            switch (header.get(i)) {
+                case "description" -> row.setDescription(value);
+                case "amount" -> row.setAmount(new BigDecimal(value));
+                case "expenseType" -> row.setExpenseType(value);
+                case "payerId" -> row.setPayerId(Long.valueOf(value));
+                case "participantIds" -> row.setParticipantIds(Arrays.stream(value.split(";"))
+                        .map(String::trim)
+                        .filter(id -> !id.isEmpty())
+                        .map(Long::valueOf)
+                        .toList());
+                case "splitType" -> row.setSplitType(value.isEmpty() ? null : value);
+                case "splitValues" -> row.setSplitValues(Arrays.stream(value.split(";"))
+                        .map(String::trim)
+                        .filter(splitValue -> !splitValue.isEmpty())
+                        .map(BigDecimal::new)
+                        .toList());
+                default -> {
+                    // Unknown columns are ignored
+                }
+            }
+        }
+        return row;
+    }
+
+    // Splits one CSV line, honouring double-quoted fields and "" escapes
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
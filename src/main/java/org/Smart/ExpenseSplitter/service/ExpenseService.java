@@ -1,27 +1,40 @@
 package org.Smart.ExpenseSplitter.service;
 
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
+import org.Smart.ExpenseSplitter.dto.CursorPageDTO;
 import org.Smart.ExpenseSplitter.dto.expense.ExpenseRequestDTO;
+import org.Smart.ExpenseSplitter.dto.expense.ExpenseResponseDTO;
 import org.Smart.ExpenseSplitter.entity.ExpenseEntity;
 import org.Smart.ExpenseSplitter.entity.GroupEntity;
 import org.Smart.ExpenseSplitter.entity.UserEntity;
 import org.Smart.ExpenseSplitter.exception.ExpenseNotFoundException;
 import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
 import org.Smart.ExpenseSplitter.exception.UserNotFoundException;
+import org.Smart.ExpenseSplitter.handler.SplitEngine;
 import org.Smart.ExpenseSplitter.repository.ExpenseRepository;
 import org.Smart.ExpenseSplitter.repository.GroupRepository;
 import org.Smart.ExpenseSplitter.repository.UserRepository;
 import org.Smart.ExpenseSplitter.type.ExpenseType;
+import org.Smart.ExpenseSplitter.type.LedgerEventType;
+import org.Smart.ExpenseSplitter.type.SplitType;
+import org.Smart.ExpenseSplitter.util.FieldSelection;
+import org.Smart.ExpenseSplitter.util.KeysetCursor;
+import org.Smart.ExpenseSplitter.util.MoneyUtils;
 import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.nio.file.AccessDeniedException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class ExpenseService {
@@ -32,46 +45,147 @@ public class ExpenseService {
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
     private final BalanceService balanceService;
+    private final DebtOptimizationScheduler debtOptimizationScheduler;
+    private final GroupWriteLock groupWriteLock;
 
     @Autowired
-    public ExpenseService(ExpenseRepository expenseRepository, GroupService groupService, AuthService userService, GroupRepository groupRepository, UserRepository userRepository, BalanceService balanceService) {
+    public ExpenseService(ExpenseRepository expenseRepository, GroupService groupService, AuthService userService, GroupRepository groupRepository, UserRepository userRepository, BalanceService balanceService, DebtOptimizationScheduler debtOptimizationScheduler, GroupWriteLock groupWriteLock) {
         this.expenseRepository = expenseRepository;
         this.groupService = groupService;
         this.userService = userService;
         this.groupRepository = groupRepository;
         this.userRepository = userRepository;
         this.balanceService = balanceService;
+        this.debtOptimizationScheduler = debtOptimizationScheduler;
+        this.groupWriteLock = groupWriteLock;
     }
 
+    @Timed(value = "expenses.add", histogram = true)
     @Transactional
     public ExpenseEntity addExpense(Long groupId, ExpenseRequestDTO expenseRequestDTO) throws BadRequestException {
-        BigDecimal amount = expenseRequestDTO.getAmount();
+        // Taken before the first read, so concurrent expenses of the group are applied one after another
+        groupWriteLock.lock(groupId);
+
+        ExpenseSplit split = resolveSplit(expenseRequestDTO);
+
         GroupEntity group = groupRepository.findById(groupId).orElseThrow(() -> new GroupNotFoundException("Group not found"));
         UserEntity payer = userRepository.findById(expenseRequestDTO.getPayerId()).orElseThrow(() -> new UserNotFoundException("Payer not found"));
-        List<UserEntity> participants = userRepository.findAllById(expenseRequestDTO.getParticipantIds());
-
-        BigDecimal splitAmount = amount.divide(BigDecimal.valueOf(participants.size()), RoundingMode.HALF_UP);
+        List<UserEntity> participants = userRepository.findAllById(split.participantIds());
+        if (participants.size() != split.participantIds().size()) {
+            throw new UserNotFoundException("Participant not found");
+        }
 
         ExpenseEntity expense = new ExpenseEntity();
         expense.setGroup(group);
         expense.setPayer(payer);
-        expense.setAmount(amount);
+        expense.setAmount(MoneyUtils.fromCents(split.amountCents()));
         expense.setExpenseType(ExpenseType.valueOf(expenseRequestDTO.getExpenseType()));
         expense.setDescription(expenseRequestDTO.getDescription());
         expense.setParticipants(participants);
+        expense.setSplitType(split.type());
+        expense.setSplitValues(split.values());
 
         ExpenseEntity savedExpense = expenseRepository.save(expense);
 
-        // Update balances for each participant
-        for (UserEntity participant : participants) {
-            if (!participant.getId().equals(payer.getId())) {
-                balanceService.updateBalance(groupId, participant.getId(), payer.getId(), splitAmount);
+        // Update the net positions of the payer and each participant
+        Map<Long, Long> deltas = new HashMap<>();
+        addSplitDeltas(deltas, payer.getId(), split);
+        balanceService.applyNetDeltas(groupId, LedgerEventType.EXPENSE, savedExpense.getId(), toAmounts(deltas));
+
+        // Pairwise balances are rebuilt in the background, coalesced with other writes to the group
+        debtOptimizationScheduler.markDirty(groupId);
+
+        return savedExpense;
+    }
+
+    /**
+     * The split of one expense, in cents.
+     *
+     * @param type           How the amount is split.
+     * @param amountCents    The amount of the expense.
+     * @param participantIds The distinct participant IDs in ascending order.
+     * @param values         The split value of each participant as requested, empty for equal splits.
+     * @param shares         The share of each participant, aligned with {@code participantIds}; adds up to the amount.
+     */
+    record ExpenseSplit(SplitType type, long amountCents, List<Long> participantIds, Map<Long, BigDecimal> values, long[] shares) {
+    }
+
+    /**
+     * Resolves the split of a requested expense.
+     * Participants are ordered by ID before splitting, so leftover cents always go to the same participants
+     * whatever the order of the request.
+     *
+     * @param request The requested expense; split values are matched to participants by position.
+     * @return The split, whose shares add up to the amount exactly.
+     * @throws IllegalArgumentException if the split type or values are invalid.
+     */
+    static ExpenseSplit resolveSplit(ExpenseRequestDTO request) {
+        SplitType type = request.getSplitType() == null ? SplitType.EQUAL : SplitType.valueOf(request.getSplitType());
+        List<Long> requested = request.getParticipantIds();
+        if (requested == null || requested.isEmpty()) {
+            throw new IllegalArgumentException("At least one participant is required");
+        }
+
+        Map<Long, BigDecimal> values = new HashMap<>();
+        if (type != SplitType.EQUAL) {
+            List<BigDecimal> splitValues = request.getSplitValues();
+            if (splitValues == null || splitValues.size() != requested.size()) {
+                throw new IllegalArgumentException("One split value is required per participant");
+            }
+            for (int i = 0; i < requested.size(); i++) {
+                if (splitValues.get(i) == null) {
+                    throw new IllegalArgumentException("Split value of participant " + requested.get(i) + " is missing");
+                }
+                if (values.put(requested.get(i), splitValues.get(i)) != null) {
+                    throw new IllegalArgumentException("Participant " + requested.get(i) + " is listed more than once");
+                }
             }
         }
 
-        balanceService.optimizeDebts(groupId);
+        List<Long> participantIds = requested.stream().distinct().sorted().toList();
+        long[] weights = null;
+        if (type != SplitType.EQUAL) {
+            weights = new long[participantIds.size()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = MoneyUtils.toCents(values.get(participantIds.get(i)));
+            }
+        }
 
-        return savedExpense;
+        long amountCents = MoneyUtils.toCents(request.getAmount());
+        long[] shares = SplitEngine.split(amountCents, type, participantIds.size(), weights);
+        return new ExpenseSplit(type, amountCents, participantIds, values, shares);
+    }
+
+    /**
+     * Adds the net-position changes of one expense to {@code deltas}:
+     * every participant other than the payer owes the payer their share.
+     *
+     * @param deltas  Net change in cents per user ID, updated in place.
+     * @param payerId The ID of the user who paid.
+     * @param split   The split of the expense.
+     */
+    static void addSplitDeltas(Map<Long, Long> deltas, Long payerId, ExpenseSplit split) {
+        List<Long> participantIds = split.participantIds();
+        long[] shares = split.shares();
+        long payerDelta = 0;
+
+        for (int i = 0; i < shares.length; i++) {
+            Long participantId = participantIds.get(i);
+            if (!participantId.equals(payerId) && shares[i] != 0) {
+                deltas.merge(participantId, -shares[i], Long::sum);
+                payerDelta += shares[i];
+            }
+        }
+        if (payerDelta != 0) {
+            deltas.merge(payerId, payerDelta, Long::sum);
+        }
+    }
+
+    // Converts net changes in cents to amounts, once per user
+    static Map<Long, BigDecimal> toAmounts(Map<Long, Long> deltas) {
+        Map<Long, BigDecimal> amounts = new HashMap<>(deltas.size() * 2);
+        deltas.forEach((userId, cents) -> amounts.put(userId, MoneyUtils.fromCents(cents)));
+        return amounts;
     }
 
     /**
@@ -135,8 +249,7 @@ public class ExpenseService {
      * @return A paginated list of expenses for the specified user.
      */
     public Page<ExpenseEntity> getUserExpenses(Pageable pageable) throws AccessDeniedException {
-        UserEntity currentUser = userService.getCurrentUser();
-        return expenseRepository.findByPayerId(currentUser.getId(), pageable);
+        return expenseRepository.findByPayerId(userService.getCurrentUserId(), pageable);
     }
 
     /**
@@ -151,23 +264,194 @@ public class ExpenseService {
                 .orElseThrow(() -> new ExpenseNotFoundException("Expense not found"));
     }
 
+    /**
+     * Fetches a page of expenses for a specific group, mapped to DTOs.
+     *
+     * @param groupId  The ID of the group to fetch expenses for.
+     * @param pageable Pagination information.
+     * @return A paginated list of expense DTOs for the specified group.
+     */
+    @Transactional(readOnly = true)
+    public Page<ExpenseResponseDTO> getGroupExpensesAsDTO(Long groupId, Pageable pageable) throws BadRequestException {
+        return getGroupExpensesAsDTO(groupId, pageable, FieldSelection.ALL);
+    }
+
+    /**
+     * Fetches a page of expenses for a specific group, mapped to DTOs with only the selected fields.
+     *
+     * @param groupId   The ID of the group to fetch expenses for.
+     * @param pageable  Pagination information.
+     * @param selection The fields and associations to return; associations left out are not loaded.
+     * @return A paginated list of expense DTOs for the specified group.
+     */
+    @Transactional(readOnly = true)
+    public Page<ExpenseResponseDTO> getGroupExpensesAsDTO(Long groupId, Pageable pageable, FieldSelection selection)
+            throws BadRequestException {
+        Page<ExpenseEntity> expenses = getGroupExpenses(groupId, pageable);
+        fetchAssociations(expenses.getContent(), selection);
+        return expenses.map(expense -> new ExpenseResponseDTO(expense, selection));
+    }
+
+    /**
+     * Fetches a page of the current user's expenses, mapped to DTOs.
+     *
+     * @param pageable Pagination information.
+     * @return A paginated list of expense DTOs for the current user.
+     */
+    @Transactional(readOnly = true)
+    public Page<ExpenseResponseDTO> getUserExpensesAsDTO(Pageable pageable) throws AccessDeniedException {
+        return getUserExpensesAsDTO(pageable, FieldSelection.ALL);
+    }
+
+    /**
+     * Fetches a page of the current user's expenses, mapped to DTOs with only the selected fields.
+     *
+     * @param pageable  Pagination information.
+     * @param selection The fields and associations to return; associations left out are not loaded.
+     * @return A paginated list of expense DTOs for the current user.
+     */
+    @Transactional(readOnly = true)
+    public Page<ExpenseResponseDTO> getUserExpensesAsDTO(Pageable pageable, FieldSelection selection) throws AccessDeniedException {
+        Page<ExpenseEntity> expenses = getUserExpenses(pageable);
+        fetchAssociations(expenses.getContent(), selection);
+        return expenses.map(expense -> new ExpenseResponseDTO(expense, selection));
+    }
+
+    /**
+     * Fetches the details of a specific expense, mapped to a DTO.
+     *
+     * @param expenseId The ID of the expense to fetch.
+     * @return The expense DTO.
+     */
+    @Transactional(readOnly = true)
+    public ExpenseResponseDTO getExpenseDetailAsDTO(Long expenseId) {
+        return getExpenseDetailAsDTO(expenseId, FieldSelection.ALL);
+    }
+
+    /**
+     * Fetches the details of a specific expense, mapped to a DTO with only the selected fields.
+     *
+     * @param expenseId The ID of the expense to fetch.
+     * @param selection The fields and associations to return; associations left out are not loaded.
+     * @return The expense DTO.
+     */
+    @Transactional(readOnly = true)
+    public ExpenseResponseDTO getExpenseDetailAsDTO(Long expenseId, FieldSelection selection) {
+        ExpenseEntity expense = expenseRepository.findDetailById(expenseId)
+                .orElseThrow(() -> new ExpenseNotFoundException("Expense not found"));
+        fetchAssociations(List.of(expense), selection);
+        return new ExpenseResponseDTO(expense, selection);
+    }
+
+    /**
+     * Fetches the expenses of a group after a keyset cursor, mapped to DTOs.
+     *
+     * @param groupId The ID of the group to fetch expenses for.
+     * @param cursor  The token returned with the previous slice, or null for the first slice.
+     * @param size    Maximum number of expenses to return.
+     * @return The next slice of expense DTOs and the cursor that follows it.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ExpenseResponseDTO> scrollGroupExpensesAsDTO(Long groupId, String cursor, int size) throws BadRequestException {
+        return scrollGroupExpensesAsDTO(groupId, cursor, size, FieldSelection.ALL);
+    }
+
+    /**
+     * Fetches the expenses of a group after a keyset cursor, mapped to DTOs with only the selected fields.
+     *
+     * @param groupId   The ID of the group to fetch expenses for.
+     * @param cursor    The token returned with the previous slice, or null for the first slice.
+     * @param size      Maximum number of expenses to return.
+     * @param selection The fields and associations to return; associations left out are not loaded.
+     * @return The next slice of expense DTOs and the cursor that follows it.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ExpenseResponseDTO> scrollGroupExpensesAsDTO(Long groupId, String cursor, int size,
+                                                                      FieldSelection selection) throws BadRequestException {
+        if (!groupService.isCurrentUserMemberOrOwnerOfGroup(groupId)) {
+            throw new BadRequestException("User is not joined to this group");
+        }
+
+        KeysetCursor position = KeysetCursor.decode(cursor, 1);
+        List<ExpenseEntity> expenses = expenseRepository.findByGroupIdAfter(
+                groupId, position.createdAt(), position.key(0), Limit.of(size + 1));
+        return toCursorPage(expenses, size, selection);
+    }
+
+    /**
+     * Fetches the current user's expenses after a keyset cursor, mapped to DTOs.
+     *
+     * @param cursor The token returned with the previous slice, or null for the first slice.
+     * @param size   Maximum number of expenses to return.
+     * @return The next slice of expense DTOs and the cursor that follows it.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ExpenseResponseDTO> scrollUserExpensesAsDTO(String cursor, int size) {
+        return scrollUserExpensesAsDTO(cursor, size, FieldSelection.ALL);
+    }
+
+    /**
+     * Fetches the current user's expenses after a keyset cursor, mapped to DTOs with only the selected fields.
+     *
+     * @param cursor    The token returned with the previous slice, or null for the first slice.
+     * @param size      Maximum number of expenses to return.
+     * @param selection The fields and associations to return; associations left out are not loaded.
+     * @return The next slice of expense DTOs and the cursor that follows it.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ExpenseResponseDTO> scrollUserExpensesAsDTO(String cursor, int size, FieldSelection selection) {
+        KeysetCursor position = KeysetCursor.decode(cursor, 1);
+        List<ExpenseEntity> expenses = expenseRepository.findByPayerIdAfter(
+                userService.getCurrentUserId(), position.createdAt(), position.key(0), Limit.of(size + 1));
+        return toCursorPage(expenses, size, selection);
+    }
+
+    // One extra row is fetched to tell whether another slice follows
+    private CursorPageDTO<ExpenseResponseDTO> toCursorPage(List<ExpenseEntity> expenses, int size, FieldSelection selection) {
+        boolean hasNext = expenses.size() > size;
+        List<ExpenseEntity> slice = hasNext ? expenses.subList(0, size) : expenses;
+        fetchAssociations(slice, selection);
+
+        String nextCursor = null;
+        if (hasNext) {
+            ExpenseEntity last = slice.get(slice.size() - 1);
+            nextCursor = KeysetCursor.of(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return new CursorPageDTO<>(slice.stream().map(expense -> new ExpenseResponseDTO(expense, selection)).toList(), nextCursor, hasNext);
+    }
+
+    // Loads the participants of the expenses and the owners and members of their groups,
+    // one query each and only when expanded, so mapping to DTOs issues no further statements.
+    // The group, its owner and the payer are joined by the query that loaded the expenses.
+    private void fetchAssociations(List<ExpenseEntity> expenses, FieldSelection selection) {
+        if (expenses.isEmpty()) return;
+
+        if (selection.expands("participants")) {
+            expenseRepository.fetchParticipants(expenses);
+        }
+        if (!selection.expands("group.users")) return;
+
+        // Deduplicate by ID, entity equality would walk the lazy collections
+        Collection<GroupEntity> groups = expenses.stream()
+                .map(ExpenseEntity::getGroup)
+                .collect(Collectors.toMap(GroupEntity::getId, group -> group, (first, second) -> first))
+                .values();
+        groupRepository.fetchOwnerAndMembers(groups);
+    }
+
     /**
      * Checks if the current authenticated user is a member of the group or the group owner associated with the given expenseId.
      *
      * @param expenseId The ID of the expense.
      * @return true if the user is a member or the owner of the group, false otherwise.
      */
-    @Transactional
     public boolean isUserMemberOrOwnerOfGroupByExpense(Long expenseId) {
-        // Fetch the expense
-        ExpenseEntity expense = expenseRepository.findById(expenseId)
+        Long groupId = expenseRepository.findGroupIdById(expenseId)
                 .orElseThrow(() -> new IllegalArgumentException("Expense not found"));
 
-        // Extract the group associated with the expense
-        GroupEntity group = expense.getGroup();
-
         // Check if the user is a member of the group or the group owner
-        return groupService.isCurrentUserMemberOfGroup(group.getId()) || groupService.isCurrentUserGroupOwner(group.getId());
+        return groupService.isCurrentUserMemberOrOwnerOfGroup(groupId);
     }
 
     /**
@@ -176,17 +460,12 @@ public class ExpenseService {
      * @param expenseId The ID of the expense.
      * @return true if the user is a member of the group, false otherwise.
      */
-    @Transactional
     public boolean isUserMemberOfGroupByExpense(Long expenseId) {
-        // Fetch the expense
-        ExpenseEntity expense = expenseRepository.findById(expenseId)
+        Long groupId = expenseRepository.findGroupIdById(expenseId)
                 .orElseThrow(() -> new IllegalArgumentException("Expense not found"));
 
-        // Extract the group associated with the expense
-        GroupEntity group = expense.getGroup();
-
         // Check if the user is a member of the group
-        return groupService.isCurrentUserMemberOfGroup(group.getId());
+        return groupService.isCurrentUserMemberOfGroup(groupId);
     }
 
 
@@ -196,17 +475,12 @@ public class ExpenseService {
      * @param expenseId The ID of the expense.
      * @return true if the user is the owner of the group, false otherwise.
      */
-    @Transactional
     public boolean isGroupOwnerByExpense(Long expenseId) {
-        // Fetch the expense
-        ExpenseEntity expense = expenseRepository.findById(expenseId)
+        Long groupId = expenseRepository.findGroupIdById(expenseId)
                 .orElseThrow(() -> new IllegalArgumentException("Expense not found"));
 
-        // Extract the group associated with the expense
-        GroupEntity group = expense.getGroup();
-
         // Check if the user is the group owner
-        return groupService.isCurrentUserGroupOwner(group.getId());
+        return groupService.isCurrentUserGroupOwner(groupId);
     }
 
     /**
@@ -217,11 +491,11 @@ public class ExpenseService {
      */
     @Transactional
     public boolean isCurrentUserExpensePayer(Long expenseId) {
-        UserEntity currentUser = userService.getCurrentUser();
+        Long currentUserId = userService.getCurrentUserId();
 
         ExpenseEntity expense = expenseRepository.findById(expenseId)
                 .orElseThrow(() -> new ExpenseNotFoundException("Expense not found"));
 
-        return expense.getPayer().getId().equals(currentUser.getId());
+        return expense.getPayer().getId().equals(currentUserId);
     }
 }
@@ -0,0 +1,83 @@
+package org.Smart.ExpenseSplitter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
+import org.Smart.ExpenseSplitter.repository.GroupRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+
+/**
+ * In-memory index of group ownership and membership used by the authorization checks.
+ * Each group is loaded once as its owner ID plus a sorted array of member IDs, without hydrating
+ * any entity, and a check is a binary search. Entries are dropped when membership changes.
+ */
+@Component
+public class GroupMembershipIndex {
+
+    // Upper bound on the number of user IDs held across all indexed groups
+    static final long MAX_INDEXED_IDS = 1_000_000;
+
+    private final GroupRepository groupRepository;
+    private final Cache<Long, Membership> memberships;
+
+    public GroupMembershipIndex(GroupRepository groupRepository) {
+        this.groupRepository = groupRepository;
+        this.memberships = Caffeine.newBuilder()
+                .maximumWeight(MAX_INDEXED_IDS)
+                .<Long, Membership>weigher((groupId, membership) -> membership.memberIds().length + 1)
+                .build();
+    }
+
+    public boolean isOwner(Long groupId, Long userId) {
+        return membership(groupId).ownerId() == userId;
+    }
+
+    public boolean isMember(Long groupId, Long userId) {
+        return Arrays.binarySearch(membership(groupId).memberIds(), userId) >= 0;
+    }
+
+    public boolean isMemberOrOwner(Long groupId, Long userId) {
+        Membership membership = membership(groupId);
+        return membership.ownerId() == userId || Arrays.binarySearch(membership.memberIds(), userId) >= 0;
+    }
+
+    /**
+     * Drops the indexed membership of a group, now and again once the surrounding transaction commits,
+     * so a concurrent reload cannot keep the state from before the change.
+     *
+     * @param groupId The ID of the group whose membership changed.
+     */
+    public void invalidate(Long groupId) {
+        memberships.invalidate(groupId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    memberships.invalidate(groupId);
+                }
+            });
+        }
+    }
+
+    private Membership membership(Long groupId) {
+        return memberships.get(groupId, this::load);
+    }
+
+    private Membership load(Long groupId) {
+        Long ownerId = groupRepository.findOwnerId(groupId)
+                .orElseThrow(() -> new GroupNotFoundException("Group not found"));
+        long[] memberIds = groupRepository.findMemberIds(groupId).stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        return new Membership(ownerId, memberIds);
+    }
+
+    private record Membership(long ownerId, long[] memberIds) {
+    }
+}
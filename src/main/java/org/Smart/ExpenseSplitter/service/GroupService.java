@@ -1,31 +1,72 @@
 package org.Smart.ExpenseSplitter.service;
 
+import org.Smart.ExpenseSplitter.dto.balance.BalanceResponseDTO;
 import org.Smart.ExpenseSplitter.dto.group.GroupRequestDTO;
 import org.Smart.ExpenseSplitter.dto.group.GroupResponseDTO;
+import org.Smart.ExpenseSplitter.dto.group.GroupSummaryDTO;
+import org.Smart.ExpenseSplitter.dto.user.UserResponseDTO;
+import org.Smart.ExpenseSplitter.entity.BalanceEntity;
+import org.Smart.ExpenseSplitter.entity.BalanceId;
 import org.Smart.ExpenseSplitter.entity.GroupEntity;
 import org.Smart.ExpenseSplitter.entity.UserEntity;
 import org.Smart.ExpenseSplitter.exception.GroupNotFoundException;
+import org.Smart.ExpenseSplitter.repository.BalanceRepository;
+import org.Smart.ExpenseSplitter.repository.ExpenseRepository;
 import org.Smart.ExpenseSplitter.repository.GroupRepository;
 import org.Smart.ExpenseSplitter.repository.UserRepository;
+import org.Smart.ExpenseSplitter.type.SettlementStrategy;
+import org.Smart.ExpenseSplitter.util.FieldSelection;
 import org.apache.coyote.BadRequestException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 public class GroupService {
 
+    // Scalar subqueries, each served by the group_id index of its table
+    private static final String SELECT_SUMMARY =
+            "select g.name, g.created_at, g.updated_at, u.id, u.username, u.email, " +
+                    "(select count(*) from group_members m where m.group_id = g.id), " +
+                    "(select count(*) from expenses e where e.group_id = g.id), " +
+                    "(select coalesce(sum(e.amount), 0) from expenses e where e.group_id = g.id), " +
+                    "(select count(*) from balances b where b.group_id = g.id), " +
+                    "(select coalesce(sum(b.amount), 0) from balances b where b.group_id = g.id) " +
+                    "from `groups` g join users u on u.id = g.owner_id where g.id = ?";
+
     private final GroupRepository groupRepository;
+    private final ExpenseRepository expenseRepository;
     private final AuthService userService;
-
-    public GroupService(GroupRepository groupRepository, AuthService userService) {
+    private final GroupMembershipIndex membershipIndex;
+    private final BalanceRepository balanceRepository;
+    private final BalanceSummaryService balanceSummaryService;
+    private final GroupWriteLock groupWriteLock;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public GroupService(GroupRepository groupRepository, ExpenseRepository expenseRepository,
+                        AuthService userService, GroupMembershipIndex membershipIndex,
+                        BalanceRepository balanceRepository, BalanceSummaryService balanceSummaryService,
+                        GroupWriteLock groupWriteLock, UserRepository userRepository, JdbcTemplate jdbcTemplate) {
         this.groupRepository = groupRepository;
+        this.expenseRepository = expenseRepository;
         this.userService = userService;
+        this.membershipIndex = membershipIndex;
+        this.balanceRepository = balanceRepository;
+        this.balanceSummaryService = balanceSummaryService;
+        this.groupWriteLock = groupWriteLock;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
 
@@ -34,46 +75,20 @@ public class GroupService {
                 .orElseThrow(() -> new GroupNotFoundException("Group with ID " + groupId + " not found"));
     }
 
-    @Transactional
     public boolean isCurrentUserGroupOwner(Long groupId) {
-        GroupEntity group = groupRepository.findById(groupId)
-                .orElseThrow(() -> new GroupNotFoundException("Group not found"));
-
-        UserEntity currentUser = userService.getCurrentUser();
-        return group.getOwner().getId().equals(currentUser.getId());
+        return membershipIndex.isOwner(groupId, userService.getCurrentUserId());
     }
 
-
-    @Transactional
     public boolean isCurrentUserMemberOfGroup(Long groupId) {
-        UserEntity currentUser = userService.getCurrentUser();
-
-        GroupEntity group = groupRepository.findById(groupId)
-                .orElseThrow(() -> new GroupNotFoundException("Group not found"));
-
-        return group.getMembers().stream()
-                .anyMatch(user -> user.getId().equals(currentUser.getId()));
+        return membershipIndex.isMember(groupId, userService.getCurrentUserId());
     }
 
-    @Transactional
     public boolean isCurrentUserMemberOrOwnerOfGroup(Long groupId) {
-        UserEntity currentUser = userService.getCurrentUser();
-
-        GroupEntity group = groupRepository.findById(groupId)
-                .orElseThrow(() -> new GroupNotFoundException("Group not found"));
-
-        return group.getOwner().getId().equals(currentUser.getId()) ||
-                group.getMembers().stream()
-                        .anyMatch(user -> user.getId().equals(currentUser.getId()));
+        return membershipIndex.isMemberOrOwner(groupId, userService.getCurrentUserId());
     }
 
-    @Transactional
     public boolean isUserMemberOrOwnerOfGroup(Long groupId, Long userId) {
-        GroupEntity group = groupRepository.findById(groupId)
-                .orElseThrow(() -> new GroupNotFoundException("Group not found"));
-
-        return group.getMembers().stream()
-                .anyMatch(user -> user.getId().equals(userId)) || group.getOwner().getId().equals(userId);
+        return membershipIndex.isMemberOrOwner(groupId, userId);
     }
 
     public GroupEntity getGroupDetail(Long groupId) {
@@ -81,6 +96,83 @@ public class GroupService {
                 .orElseThrow(() -> new GroupNotFoundException("Group not found"));
     }
 
+    /**
+     * Retrieves the details of a group in the form of a DTO.
+     *
+     * @param groupId The ID of the group.
+     * @return The group DTO with its members, expenses and balances.
+     */
+    @Transactional(readOnly = true)
+    public GroupResponseDTO getGroupDetailAsDTO(Long groupId) {
+        return getGroupDetailAsDTO(groupId, FieldSelection.ALL);
+    }
+
+    /**
+     * Retrieves the details of a group in the form of a DTO with only the selected fields.
+     *
+     * @param groupId   The ID of the group.
+     * @param selection The fields and associations to return; associations left out are not loaded.
+     * @return The group DTO.
+     */
+    @Transactional(readOnly = true)
+    public GroupResponseDTO getGroupDetailAsDTO(Long groupId, FieldSelection selection) {
+        GroupEntity group = getGroupDetail(groupId);
+        fetchAssociations(List.of(group), selection);
+        return new GroupResponseDTO(group, selection);
+    }
+
+    /**
+     * Retrieves the summary of a group: its counts and totals instead of its members, expenses and balances.
+     *
+     * @param groupId The ID of the group.
+     * @return The group summary.
+     * @throws GroupNotFoundException if the group does not exist.
+     */
+    @Transactional(readOnly = true)
+    public GroupSummaryDTO getGroupSummaryAsDTO(Long groupId) {
+        List<GroupSummaryDTO> summaries = jdbcTemplate.query(SELECT_SUMMARY, (rs, rowNum) -> new GroupSummaryDTO(
+                groupId,
+                rs.getString(1),
+                new UserResponseDTO(rs.getLong(4), rs.getString(5), rs.getString(6)),
+                rs.getLong(7),
+                rs.getLong(8),
+                rs.getBigDecimal(9),
+                rs.getLong(10),
+                rs.getBigDecimal(11),
+                rs.getTimestamp(2).toLocalDateTime(),
+                Optional.ofNullable(rs.getTimestamp(3)).map(Timestamp::toLocalDateTime).orElse(null)
+        ), groupId);
+
+        if (summaries.isEmpty()) {
+            throw new GroupNotFoundException("Group not found");
+        }
+        return summaries.get(0);
+    }
+
+    /**
+     * Retrieves a page of the members of a group.
+     *
+     * @param groupId  The ID of the group.
+     * @param pageable Pagination information.
+     * @return A page of the group's members.
+     */
+    @Transactional(readOnly = true)
+    public Page<UserResponseDTO> getGroupMembersAsDTO(Long groupId, Pageable pageable) {
+        return userRepository.findMembersByGroupId(groupId, pageable).map(UserResponseDTO::new);
+    }
+
+    /**
+     * Retrieves a page of the open balances of a group.
+     *
+     * @param groupId  The ID of the group.
+     * @param pageable Pagination information.
+     * @return A page of the group's balances with their users.
+     */
+    @Transactional(readOnly = true)
+    public Page<BalanceResponseDTO> getGroupBalancesAsDTO(Long groupId, Pageable pageable) {
+        return balanceRepository.findByGroupId(groupId, pageable).map(BalanceResponseDTO::new);
+    }
+
     public Page<GroupEntity> getUserGroups(Pageable pageable) {
         UserEntity currentUser = userService.getCurrentUser();
         return groupRepository.findByOwner(currentUser, pageable);
@@ -98,6 +190,9 @@ public class GroupService {
     public GroupEntity updateGroup(Long groupId, GroupRequestDTO groupRequestDTO) {
         GroupEntity group = getGroupDetail(groupId);
         group.setName(groupRequestDTO.getName());
+        if (groupRequestDTO.getSettlementStrategy() != null) {
+            group.setSettlementStrategy(SettlementStrategy.valueOf(groupRequestDTO.getSettlementStrategy()));
+        }
 
         return groupRepository.save(group);
     }
@@ -120,11 +215,12 @@ public class GroupService {
             throw new BadRequestException("Can not join group because you are the group owner");
         }
 
-        if (group.getMembers().contains(currentUser)) {
+        if (membershipIndex.isMember(groupId, currentUser.getId())) {
             throw new BadRequestException("User is already a member of the group");
         }
 
         group.getMembers().add(currentUser);
+        membershipIndex.invalidate(groupId);
         return groupRepository.save(group);
     }
 
@@ -145,11 +241,12 @@ public class GroupService {
             throw new BadRequestException("You are the group owner, delete the group instead");
         }
 
-        if (!group.getMembers().contains(currentUser)) {
+        if (!membershipIndex.isMember(groupId, currentUser.getId())) {
             throw new BadRequestException("User is not a member of the group");
         }
 
         group.getMembers().remove(currentUser);
+        membershipIndex.invalidate(groupId);
         return groupRepository.save(group);
     }
 
@@ -162,10 +259,18 @@ public class GroupService {
      */
     @Transactional
     public void deleteGroup(Long groupId) throws BadRequestException {
+        groupWriteLock.lock(groupId);
+
         GroupEntity group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new GroupNotFoundException("Group not found"));
 
+        // The group's balances are removed with it, take them out of the users' summaries
+        Map<BalanceId, BigDecimal> removed = balanceRepository.findByGroupId(groupId).stream()
+                .collect(Collectors.toMap(BalanceEntity::getId, balance -> balance.getAmount().negate()));
+        balanceSummaryService.recordBalanceChanges(removed);
+
         groupRepository.delete(group);
+        membershipIndex.invalidate(groupId);
     }
 
     /**
@@ -174,13 +279,44 @@ public class GroupService {
      * @param pageable Pagination information for retrieving groups.
      * @return A page of GroupResponseDTOs the current user is part of.
      */
+    @Transactional(readOnly = true)
     public Page<GroupResponseDTO> getUserGroupsAsDTO(Pageable pageable) {
+        return getUserGroupsAsDTO(pageable, FieldSelection.ALL);
+    }
+
+    /**
+     * Retrieves a paginated list of the current user's groups, in the form of DTOs with only the selected fields.
+     *
+     * @param pageable  Pagination information for retrieving groups.
+     * @param selection The fields and associations to return; associations left out are not loaded.
+     * @return A page of GroupResponseDTOs the current user is part of.
+     */
+    @Transactional(readOnly = true)
+    public Page<GroupResponseDTO> getUserGroupsAsDTO(Pageable pageable, FieldSelection selection) {
         Page<GroupEntity> userGroups = getUserGroups(pageable);
+        fetchAssociations(userGroups.getContent(), selection);
 
         List<GroupResponseDTO> groupResponseDTOs = userGroups.getContent().stream()
-                .map(GroupResponseDTO::new)
+                .map(group -> new GroupResponseDTO(group, selection))
                 .collect(Collectors.toList());
 
         return new PageImpl<>(groupResponseDTOs, userGroups.getPageable(), userGroups.getTotalElements());
     }
+
+    // Loads the expanded associations GroupResponseDTO reads with a fixed number of queries:
+    // owners and members, expenses with their payers, expense participants, and balances with their users
+    private void fetchAssociations(List<GroupEntity> groups, FieldSelection selection) {
+        if (groups.isEmpty()) return;
+
+        if (selection.expands("users")) {
+            groupRepository.fetchOwnerAndMembers(groups);
+        }
+        if (selection.expands("expenses")) {
+            groupRepository.fetchExpensesWithPayer(groups);
+            expenseRepository.fetchParticipantsByGroups(groups);
+        }
+        if (selection.expands("balances")) {
+            groupRepository.fetchBalancesWithUsers(groups);
+        }
+    }
 }
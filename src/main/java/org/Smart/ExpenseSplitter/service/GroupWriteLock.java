@@ -0,0 +1,132 @@
+package org.Smart.ExpenseSplitter.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the writes to a group's net positions and balances within this JVM.
+ * Group IDs are hashed onto a fixed number of fair locks, so writes to one group are applied
+ * in arrival order while writes to groups on other stripes run in parallel. A lock is taken
+ * inside the writing transaction and released once it completes, which keeps the next writer
+ * from reading rows the current one has not committed yet. It must come before the transaction's
+ * first read: under REPEATABLE READ that read fixes the snapshot, which would then predate the
+ * writes committed while the lock was awaited.
+ * <p>
+ * A transaction that writes several groups must lock them together through {@link #lockAll}, which
+ * takes their stripes in index order; locking them one by one can deadlock with another such transaction.
+ */
+@Component
+public class GroupWriteLock {
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final Duration timeout;
+
+    public GroupWriteLock(@Value("${app.group-write-lock.stripes:64}") int stripeCount,
+                          @Value("${app.group-write-lock.timeout:10s}") Duration timeout,
+                          MeterRegistry meterRegistry) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("The number of stripes must be a power of two");
+        }
+
+        this.stripes = new Stripe[stripeCount];
+        this.mask = stripeCount - 1;
+        this.timeout = timeout;
+
+        for (int i = 0; i < stripeCount; i++) {
+            ReentrantLock lock = new ReentrantLock(true);
+            String stripe = String.valueOf(i);
+
+            Gauge.builder("group.write.queue.depth", lock, ReentrantLock::getQueueLength)
+                    .description("Writers waiting for the stripe")
+                    .tag("stripe", stripe)
+                    .register(meterRegistry);
+            Timer wait = Timer.builder("group.write.lock.wait")
+                    .description("Time spent waiting for the stripe")
+                    .tag("stripe", stripe)
+                    .register(meterRegistry);
+
+            stripes[i] = new Stripe(lock, wait);
+        }
+    }
+
+    /**
+     * Locks the stripe of the group until the current transaction completes.
+     * Reentrant, so nested transactional calls on the same group do not block each other.
+     *
+     * @param groupId The ID of the group about to be written.
+     * @throws CannotAcquireLockException if the stripe is not free within the configured timeout.
+     */
+    public void lock(Long groupId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Group writes must run inside a transaction");
+        }
+
+        lockStripe(index(groupId), groupId);
+    }
+
+    /**
+     * Locks the stripes of all the groups until the current transaction completes.
+     * Each stripe is taken once, in ascending stripe index, so two transactions writing
+     * overlapping sets of groups always lock their common stripes in the same order.
+     *
+     * @param groupIds The IDs of the groups about to be written, in any order and possibly repeated.
+     * @throws CannotAcquireLockException if a stripe is not free within the configured timeout.
+     */
+    public void lockAll(Collection<Long> groupIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Group writes must run inside a transaction");
+        }
+
+        // Stripe index -> the first group mapped to it, named in the timeout message
+        SortedMap<Integer, Long> byStripe = new TreeMap<>();
+        for (Long groupId : groupIds) {
+            byStripe.putIfAbsent(index(groupId), groupId);
+        }
+        byStripe.forEach(this::lockStripe);
+    }
+
+    private void lockStripe(int index, Long groupId) {
+        Stripe stripe = stripes[index];
+        long start = System.nanoTime();
+        try {
+            if (!stripe.lock().tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new CannotAcquireLockException("Timed out waiting for the write lock of group " + groupId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted waiting for the write lock of group " + groupId, e);
+        } finally {
+            stripe.wait().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                stripe.lock().unlock();
+            }
+        });
+    }
+
+    // Spreads sequential IDs over the stripes
+    private int index(Long groupId) {
+        long h = groupId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private record Stripe(ReentrantLock lock, Timer wait) {
+    }
+}
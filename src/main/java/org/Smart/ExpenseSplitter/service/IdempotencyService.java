@@ -0,0 +1,250 @@
+package org.Smart.ExpenseSplitter.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.Smart.ExpenseSplitter.dto.JsonResponse;
+import org.Smart.ExpenseSplitter.entity.IdempotencyKeyEntity;
+import org.Smart.ExpenseSplitter.entity.IdempotencyKeyId;
+import org.Smart.ExpenseSplitter.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs writes at most once per Idempotency-Key.
+ * The first request with a key inserts its idempotency_keys row as in progress and runs the write in the
+ * same transaction, then stores its response in that row before committing; a duplicate on another instance
+ * blocks on the row's primary key until then. Responses are also kept in a bounded in-process cache.
+ * Retries get the stored response replayed, and duplicates that arrive while the first request is still
+ * running wait for its result. Failed responses roll the row back with the write and are handed to the
+ * waiting duplicates but not kept, so a later retry runs again.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 64;
+
+    // Written with plain SQL: a JPA save would merge into a row another instance committed meanwhile
+    private static final String INSERT_KEY =
+            "insert into idempotency_keys (user_id, idempotency_key, request_hash, status, body, created_at) " +
+                    "values (?, ?, ?, ?, ?, ?)";
+    private static final String COMPLETE_KEY =
+            "update idempotency_keys set status = ?, body = ? where user_id = ? and idempotency_key = ?";
+
+    private final IdempotencyKeyRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AuthService userService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final Duration waitTimeout;
+
+    // In-flight and recently completed requests, completed with their response
+    private final Cache<IdempotencyKeyId, CompletableFuture<StoredResponse>> responses;
+
+    public IdempotencyService(IdempotencyKeyRepository repository, JdbcTemplate jdbcTemplate, AuthService userService,
+                              ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                              @Value("${app.idempotency.cache-size:10000}") long cacheSize,
+                              @Value("${app.idempotency.retention:24h}") Duration retention,
+                              @Value("${app.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                              MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.waitTimeout = waitTimeout;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retention)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "idempotency.responses");
+    }
+
+    /**
+     * Runs the write unless a request with the same key already ran or is running.
+     *
+     * @param key       The Idempotency-Key header, or null to run the write unconditionally.
+     * @param operation Identifies the endpoint and its path variables, e.g. {@code expenses.create:42}.
+     * @param request   The request body, part of the fingerprint a reused key must match.
+     * @param write     The write, returning its response; it runs in the transaction that stores the key.
+     * @return The response of the write, or the replayed response of the first request with the key.
+     */
+    public ResponseEntity<JsonResponse> execute(String key, String operation, Object request,
+                                                Supplier<ResponseEntity<JsonResponse>> write) {
+        if (key == null) {
+            return write.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(new JsonResponse(false, HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+
+        IdempotencyKeyId id = new IdempotencyKeyId(userService.getCurrentUserId(), key);
+        byte[] requestHash = fingerprint(operation, request);
+
+        CompletableFuture<StoredResponse> pending = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = responses.asMap().putIfAbsent(id, pending);
+        if (existing != null) {
+            return replay(await(existing), requestHash);
+        }
+
+        try {
+            StoredResponse stored = findStored(id);
+            if (stored != null) {
+                pending.complete(stored);
+                return replay(stored, requestHash);
+            }
+
+            ResponseEntity<JsonResponse> response = transactionTemplate.execute(status -> {
+                if (!claim(id, requestHash)) {
+                    status.setRollbackOnly();
+                    return null;
+                }
+
+                ResponseEntity<JsonResponse> result = write.get();
+                if (result.getStatusCode().is2xxSuccessful()) {
+                    jdbcTemplate.update(COMPLETE_KEY, result.getStatusCode().value(), serialize(result.getBody()),
+                            id.getUserId(), id.getIdempotencyKey());
+                } else {
+                    status.setRollbackOnly();
+                }
+                return result;
+            });
+
+            // Another instance committed the key while this one waited on it
+            if (response == null) {
+                stored = findStored(id);
+                if (stored == null) {
+                    responses.asMap().remove(id, pending);
+                }
+                pending.complete(stored);
+                return replay(stored, requestHash);
+            }
+
+            stored = new StoredResponse(requestHash, response.getStatusCode().value(), serialize(response.getBody()));
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                responses.asMap().remove(id, pending);
+            }
+            pending.complete(stored);
+            return response;
+        } catch (RuntimeException e) {
+            responses.asMap().remove(id, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Drops the stored responses that are past their retention
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval:1h}")
+    public void deleteExpired() {
+        int deleted = repository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.debug("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> pending) {
+        try {
+            return pending.get(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private ResponseEntity<JsonResponse> replay(StoredResponse stored, byte[] requestHash) {
+        if (stored == null || stored.status() == IdempotencyKeyEntity.IN_PROGRESS) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new JsonResponse(false, "A request with this " + HEADER + " did not complete, retry it"));
+        }
+        if (!Arrays.equals(stored.requestHash(), requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(new JsonResponse(false, HEADER + " was already used with a different request"));
+        }
+
+        try {
+            return ResponseEntity.status(stored.status())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(objectMapper.readValue(stored.body(), JsonResponse.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response cannot be read", e);
+        }
+    }
+
+    private StoredResponse findStored(IdempotencyKeyId id) {
+        return repository.findById(id)
+                .map(entity -> new StoredResponse(entity.getRequestHash(), entity.getStatus(), entity.getBody()))
+                .orElse(null);
+    }
+
+    // Inserts the key as in progress, so a duplicate waits on its primary key until this transaction ends;
+    // false when another instance committed the key first
+    private boolean claim(IdempotencyKeyId id, byte[] requestHash) {
+        try {
+            jdbcTemplate.update(INSERT_KEY, id.getUserId(), id.getIdempotencyKey(), requestHash,
+                    IdempotencyKeyEntity.IN_PROGRESS, "", Timestamp.valueOf(LocalDateTime.now()));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Idempotency key {} was already stored", id, e);
+            return false;
+        }
+    }
+
+    private byte[] fingerprint(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Request cannot be fingerprinted", e);
+        }
+    }
+
+    private String serialize(JsonResponse body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be stored", e);
+        }
+    }
+
+    private record StoredResponse(byte[] requestHash, int status, String body) {
+    }
+}
@@ -1,60 +1,138 @@
 package org.Smart.ExpenseSplitter.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.Smart.ExpenseSplitter.config.JwtProperties;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtService {
 
+    private static final String USER_ID_CLAIM = "userId";
+
     private final JwtProperties jwtProperties;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    // Verified tokens keyed by their SHA-256 hash, each entry expires with its token
+    private final Cache<String, AuthenticatedUser> verifiedTokens;
 
-    public JwtService(JwtProperties jwtProperties) {
+    private final Timer cachedVerifications;
+    private final Timer parsedVerifications;
+    private final Timer rejectedVerifications;
+
+    public JwtService(JwtProperties jwtProperties, MeterRegistry meterRegistry) {
         this.jwtProperties = jwtProperties;
-    }
+        this.signingKey = new SecretKeySpec(jwtProperties.getSecret().getBytes(), SignatureAlgorithm.HS256.getJcaName());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheSize())
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
 
-    private SecretKey createKey() {
-        return new SecretKeySpec(jwtProperties.getSecret().getBytes(), SignatureAlgorithm.HS256.getJcaName());
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.tokens");
+        this.cachedVerifications = verificationTimer(meterRegistry, "cached");
+        this.parsedVerifications = verificationTimer(meterRegistry, "parsed");
+        this.rejectedVerifications = verificationTimer(meterRegistry, "rejected");
     }
 
-    public String generateToken(Authentication authentication) {
+    public String generateToken(Authentication authentication, Long userId) {
         return Jwts.builder()
                 .setSubject(authentication.getName())
+                .claim(USER_ID_CLAIM, userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtProperties.getExpiration()))
-                .signWith(createKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    public boolean validateToken(String token, String username) {
-        String usernameFromToken = extractUsername(token);
-        return (usernameFromToken.equals(username) && !isTokenExpired(token));
+    /**
+     * Verifies the signature and expiration of a token, parsing it at most once while it is cached.
+     *
+     * @param token the compact JWT
+     * @return the principal described by the token, or empty if the token is invalid or expired
+     */
+    public Optional<AuthenticatedUser> verify(String token) {
+        long start = System.nanoTime();
+        String key = hash(token);
+        AuthenticatedUser cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) {
+            cachedVerifications.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Optional.of(cached);
+        }
+
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Date expiration = claims.getExpiration();
+            AuthenticatedUser user = new AuthenticatedUser(
+                    claims.get(USER_ID_CLAIM, Long.class),
+                    claims.getSubject(),
+                    expiration != null ? expiration.toInstant() : null
+            );
+            verifiedTokens.put(key, user);
+            parsedVerifications.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Optional.of(user);
+        } catch (JwtException | IllegalArgumentException e) {
+            rejectedVerifications.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Optional.empty();
+        }
     }
 
-    public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(createKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    private static Timer verificationTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("jwt.verify")
+                .description("Token verification, by whether the token was cached, parsed or rejected")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
-    private Date extractExpiration(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(createKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getExpiration();
+    private static class TokenExpiry implements Expiry<String, AuthenticatedUser> {
+
+        @Override
+        public long expireAfterCreate(String key, AuthenticatedUser user, long currentTime) {
+            if (user.expiresAt() == null) {
+                return Long.MAX_VALUE;
+            }
+            return Math.max(0, Duration.between(Instant.now(), user.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, AuthenticatedUser user, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, AuthenticatedUser user, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,152 @@
+package org.Smart.ExpenseSplitter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.Smart.ExpenseSplitter.dto.balance.NetPositionDTO;
+import org.Smart.ExpenseSplitter.entity.LedgerEventEntity;
+import org.Smart.ExpenseSplitter.entity.LedgerSnapshotEntity;
+import org.Smart.ExpenseSplitter.entity.NetPositionEntity;
+import org.Smart.ExpenseSplitter.repository.LedgerEventRepository;
+import org.Smart.ExpenseSplitter.repository.LedgerSnapshotRepository;
+import org.Smart.ExpenseSplitter.repository.NetPositionRepository;
+import org.Smart.ExpenseSplitter.type.LedgerEventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only ledger of the changes to each group's net positions.
+ * Every {@code snapshotInterval} events the current positions are written as a snapshot,
+ * so a group is replayed from its latest snapshot plus at most that many events.
+ * Callers hold the group's write lock.
+ */
+@Service
+public class LedgerService {
+
+    private final LedgerEventRepository eventRepository;
+    private final LedgerSnapshotRepository snapshotRepository;
+    private final NetPositionRepository netPositionRepository;
+    private final int snapshotInterval;
+
+    // Events recorded per group since its latest snapshot, loaded from the database on first use
+    private final Cache<Long, AtomicLong> eventsSinceSnapshot = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
+    public LedgerService(LedgerEventRepository eventRepository, LedgerSnapshotRepository snapshotRepository,
+                         NetPositionRepository netPositionRepository,
+                         @Value("${app.ledger.snapshot-interval:1000}") int snapshotInterval) {
+        this.eventRepository = eventRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.netPositionRepository = netPositionRepository;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Appends an event to the group's ledger, and snapshots the net positions once the interval is reached.
+     * The net positions must already include the deltas of the event.
+     *
+     * @param groupId   The ID of the group.
+     * @param type      What caused the change.
+     * @param expenseId The expense that caused the change, or null.
+     * @param deltas    Net change per user ID, without zero entries.
+     */
+    @Transactional
+    public void record(Long groupId, LedgerEventType type, Long expenseId, Map<Long, BigDecimal> deltas) {
+        // Counted before the insert; a rolled back event only brings the next snapshot forward
+        AtomicLong pending = eventsSinceSnapshot.get(groupId, this::countEventsSinceSnapshot);
+
+        LedgerEventEntity event = new LedgerEventEntity();
+        event.setGroupId(groupId);
+        event.setType(type);
+        event.setExpenseId(expenseId);
+        event.setDeltas(new HashMap<>(deltas));
+        eventRepository.save(event);
+
+        if (pending.incrementAndGet() >= snapshotInterval) {
+            snapshot(groupId, event.getId());
+            pending.set(0);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the group's current net positions covering every event up to {@code lastEventId}.
+     *
+     * @param groupId     The ID of the group.
+     * @param lastEventId The ID of the latest event reflected in the positions, 0 if there is none.
+     */
+    @Transactional
+    public void snapshot(Long groupId, Long lastEventId) {
+        Map<Long, BigDecimal> positions = new HashMap<>();
+        for (NetPositionEntity position : netPositionRepository.findByGroupId(groupId)) {
+            if (position.getAmount().signum() != 0) {
+                positions.put(position.getId().getUserId(), position.getAmount());
+            }
+        }
+
+        LedgerSnapshotEntity snapshot = new LedgerSnapshotEntity();
+        snapshot.setGroupId(groupId);
+        snapshot.setLastEventId(lastEventId);
+        snapshot.setPositions(positions);
+        snapshotRepository.save(snapshot);
+    }
+
+    /**
+     * Writes the first snapshot of a group whose net positions were built outside the ledger,
+     * so replays start from them.
+     *
+     * @param groupId The ID of the group.
+     */
+    @Transactional
+    public void baseline(Long groupId) {
+        snapshot(groupId, eventRepository.findLastId(groupId).orElse(0L));
+        eventsSinceSnapshot.invalidate(groupId);
+    }
+
+    /**
+     * Rebuilds the net positions of a group from its latest snapshot and the events after it,
+     * without reading the maintained positions.
+     *
+     * @param groupId The ID of the group.
+     * @return Net position per user ID; users whose position is zero are omitted.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> replayNetPositions(Long groupId) {
+        Map<Long, BigDecimal> positions = new HashMap<>();
+        long afterId = 0;
+
+        LedgerSnapshotEntity snapshot = snapshotRepository.findFirstByGroupIdOrderByLastEventIdDesc(groupId).orElse(null);
+        if (snapshot != null) {
+            positions.putAll(snapshot.getPositions());
+            afterId = snapshot.getLastEventId();
+        }
+
+        List<Object[]> sums = eventRepository.sumDeltasAfter(groupId, afterId);
+        for (Object[] row : sums) {
+            positions.merge((Long) row[0], (BigDecimal) row[1], BigDecimal::add);
+        }
+
+        positions.values().removeIf(amount -> amount.signum() == 0);
+        return positions;
+    }
+
+    // Replayed net positions of a group as DTOs, ordered by user ID
+    @Transactional(readOnly = true)
+    public List<NetPositionDTO> replayNetPositionsAsDTO(Long groupId) {
+        return replayNetPositions(groupId).entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new NetPositionDTO(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private AtomicLong countEventsSinceSnapshot(Long groupId) {
+        long afterId = snapshotRepository.findLastEventId(groupId).orElse(0L);
+        return new AtomicLong(eventRepository.countByGroupIdAndIdGreaterThan(groupId, afterId));
+    }
+}
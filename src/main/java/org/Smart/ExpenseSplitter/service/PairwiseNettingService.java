@@ -0,0 +1,187 @@
+package org.Smart.ExpenseSplitter.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.Smart.ExpenseSplitter.dto.balance.GroupNetDTO;
+import org.Smart.ExpenseSplitter.dto.balance.PairwiseNetDTO;
+import org.Smart.ExpenseSplitter.dto.balance.PairwiseNetDetailDTO;
+import org.Smart.ExpenseSplitter.entity.BalanceId;
+import org.Smart.ExpenseSplitter.type.LedgerEventType;
+import org.apache.coyote.BadRequestException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Nets the balances between two users across every group they share.
+ * Net amounts are aggregated in SQL over the balances table, without loading entities.
+ * Settling a pair clears its balance in every shared group in one transaction: the balance rows are
+ * deleted with one JDBC batch, and each group's net positions and ledger record the settlement.
+ * The shared groups are found before that transaction starts, so its first read comes after their locks.
+ */
+@Service
+public class PairwiseNettingService {
+
+    // Net per counterparty of a user; positive when the counterparty owes the user
+    private static final String SELECT_NETS =
+            "select counterparty_id, sum(amount), count(distinct group_id) from (" +
+                    "select owes_to as counterparty_id, group_id, -amount as amount from balances where user_id = ? " +
+                    "union all select user_id, group_id, amount from balances where owes_to = ?) b " +
+                    "group by counterparty_id having sum(amount) <> 0 order by counterparty_id";
+    private static final String SELECT_PAIR =
+            "select group_id, user_id, owes_to, amount from balances " +
+                    "where (user_id = ? and owes_to = ?) or (user_id = ? and owes_to = ?) order by group_id";
+    private static final String SELECT_PAIR_GROUPS =
+            "select distinct group_id from balances " +
+                    "where (user_id = ? and owes_to = ?) or (user_id = ? and owes_to = ?) order by group_id";
+    private static final String DELETE_BALANCE =
+            "delete from balances where group_id = ? and user_id = ? and owes_to = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BalanceService balanceService;
+    private final BalanceSummaryService balanceSummaryService;
+    private final GroupWriteLock groupWriteLock;
+    private final AuthService userService;
+    private final TransactionTemplate transactionTemplate;
+
+    public PairwiseNettingService(JdbcTemplate jdbcTemplate, BalanceService balanceService,
+                                  BalanceSummaryService balanceSummaryService, GroupWriteLock groupWriteLock,
+                                  AuthService userService, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.balanceService = balanceService;
+        this.balanceSummaryService = balanceSummaryService;
+        this.groupWriteLock = groupWriteLock;
+        this.userService = userService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Fetches the current user's net position with every counterparty across all shared groups.
+     *
+     * @return One entry per counterparty with a non-zero net, ordered by counterparty ID.
+     */
+    @Transactional(readOnly = true)
+    public List<PairwiseNetDTO> getCurrentUserNetsAsDTO() {
+        Long userId = userService.getCurrentUserId();
+        return jdbcTemplate.query(SELECT_NETS,
+                (rs, rowNum) -> new PairwiseNetDTO(rs.getLong(1), rs.getBigDecimal(2), rs.getLong(3)),
+                userId, userId);
+    }
+
+    /**
+     * Fetches the current user's net position with one counterparty, broken down by group.
+     *
+     * @param counterpartyId The ID of the other user.
+     * @return The net amount and the amount of every shared group with an outstanding balance.
+     */
+    @Transactional(readOnly = true)
+    public PairwiseNetDetailDTO getCurrentUserNetAsDTO(Long counterpartyId) {
+        return toDetail(counterpartyId, loadPair(userService.getCurrentUserId(), counterpartyId));
+    }
+
+    /**
+     * Settles the current user's net position with a counterparty in every shared group at once.
+     * Only the user who owes the net amount settles it; a pair whose groups cancel out can be settled by either.
+     * Must be called outside a transaction, the settlement commits on its own.
+     *
+     * @param counterpartyId The ID of the other user.
+     * @param expectedAmount The net amount the client saw, or null; the settlement is refused if it has changed.
+     * @return What was settled, per group.
+     * @throws BadRequestException if there is nothing to settle, the counterparty owes the net, or it has changed.
+     */
+    @Timed(value = "balances.settle.pairwise", histogram = true)
+    public PairwiseNetDetailDTO settleCurrentUserNet(Long counterpartyId, BigDecimal expectedAmount) throws BadRequestException {
+        Long userId = userService.getCurrentUserId();
+        if (userId.equals(counterpartyId)) {
+            throw new BadRequestException("Cannot settle with yourself.");
+        }
+
+        // Read outside the transaction: a read inside it before the locks would fix a snapshot older than them
+        List<Long> groupIds = jdbcTemplate.queryForList(SELECT_PAIR_GROUPS, Long.class,
+                userId, counterpartyId, counterpartyId, userId);
+
+        try {
+            return transactionTemplate.execute(status -> settle(userId, counterpartyId, expectedAmount, groupIds));
+        } catch (SettlementRefusedException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    // Locks the shared groups together, then reads the balances they guard and clears them
+    private PairwiseNetDetailDTO settle(Long userId, Long counterpartyId, BigDecimal expectedAmount, List<Long> groupIds) {
+        groupWriteLock.lockAll(groupIds);
+        Set<Long> locked = new HashSet<>(groupIds);
+
+        List<PairBalance> balances = loadPair(userId, counterpartyId);
+        balances.removeIf(balance -> !locked.contains(balance.groupId()));
+        if (balances.isEmpty()) {
+            throw new SettlementRefusedException("No outstanding balance found with the specified user.");
+        }
+
+        PairwiseNetDetailDTO settled = toDetail(counterpartyId, balances);
+        if (settled.amount().signum() > 0) {
+            throw new SettlementRefusedException("The net balance is owed to you, the other user settles it.");
+        }
+        if (expectedAmount != null && expectedAmount.compareTo(settled.amount().negate()) != 0) {
+            throw new SettlementRefusedException("The net balance has changed to " + settled.amount().negate() + ".");
+        }
+
+        List<Object[]> deletes = new ArrayList<>(balances.size());
+        Map<BalanceId, BigDecimal> summaryChanges = new HashMap<>();
+        Map<Long, Map<Long, BigDecimal>> groupDeltas = new TreeMap<>();
+        for (PairBalance balance : balances) {
+            deletes.add(new Object[]{balance.groupId(), balance.debtorId(), balance.creditorId()});
+            summaryChanges.put(new BalanceId(balance.groupId(), balance.debtorId(), balance.creditorId()),
+                    balance.amount().negate());
+
+            // The debtor paid the creditor the full amount in this group
+            Map<Long, BigDecimal> deltas = groupDeltas.computeIfAbsent(balance.groupId(), id -> new HashMap<>());
+            deltas.merge(balance.debtorId(), balance.amount(), BigDecimal::add);
+            deltas.merge(balance.creditorId(), balance.amount().negate(), BigDecimal::add);
+        }
+
+        jdbcTemplate.batchUpdate(DELETE_BALANCE, deletes);
+        balanceSummaryService.recordBalanceChanges(summaryChanges);
+        groupDeltas.forEach((groupId, deltas) ->
+                balanceService.applyNetDeltas(groupId, LedgerEventType.SETTLEMENT, null, deltas));
+
+        return settled;
+    }
+
+    private List<PairBalance> loadPair(Long userId, Long counterpartyId) {
+        return new ArrayList<>(jdbcTemplate.query(SELECT_PAIR,
+                (rs, rowNum) -> new PairBalance(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4)),
+                userId, counterpartyId, counterpartyId, userId));
+    }
+
+    // Folds the pair's balances into one amount per group, from the current user's side
+    private static PairwiseNetDetailDTO toDetail(Long counterpartyId, List<PairBalance> balances) {
+        SortedMap<Long, BigDecimal> byGroup = new TreeMap<>();
+        for (PairBalance balance : balances) {
+            BigDecimal amount = balance.debtorId() == counterpartyId ? balance.amount() : balance.amount().negate();
+            byGroup.merge(balance.groupId(), amount, BigDecimal::add);
+        }
+
+        List<GroupNetDTO> groups = new ArrayList<>(byGroup.size());
+        BigDecimal net = BigDecimal.ZERO;
+        for (Map.Entry<Long, BigDecimal> group : byGroup.entrySet()) {
+            groups.add(new GroupNetDTO(group.getKey(), group.getValue()));
+            net = net.add(group.getValue());
+        }
+        return new PairwiseNetDetailDTO(counterpartyId, net, groups);
+    }
+
+    private record PairBalance(long groupId, long debtorId, long creditorId, BigDecimal amount) {
+    }
+
+    // Refuses a settlement from inside its transaction, reported as BadRequestException once it has rolled back
+    private static class SettlementRefusedException extends RuntimeException {
+        SettlementRefusedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.Smart.ExpenseSplitter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.Smart.ExpenseSplitter.handler.DebtPlan;
+import org.Smart.ExpenseSplitter.handler.ExactSettlementSolver;
+import org.Smart.ExpenseSplitter.handler.SettlementEngine;
+import org.Smart.ExpenseSplitter.handler.SettlementPlan;
+import org.Smart.ExpenseSplitter.type.SettlementStrategy;
+import org.Smart.ExpenseSplitter.util.MoneyUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Chooses how the debts of a group are settled.
+ * Groups using the EXACT strategy get the plan with the fewest transfers when the exact solver finishes
+ * within its member limit and CPU time budget, and the greedy plan otherwise.
+ */
+@Component
+public class SettlementPlanner {
+
+    private final int exactMaxMembers;
+    private final Duration exactTimeBudget;
+
+    // requested strategy -> strategy that produced the plan -> plans counted
+    private final Map<SettlementStrategy, Map<SettlementStrategy, Counter>> plans = new EnumMap<>(SettlementStrategy.class);
+
+    public SettlementPlanner(@Value("${app.settlement.exact.max-members:20}") int exactMaxMembers,
+                             @Value("${app.settlement.exact.time-budget:50ms}") Duration exactTimeBudget,
+                             MeterRegistry meterRegistry) {
+        if (exactMaxMembers > ExactSettlementSolver.MAX_MEMBERS) {
+            throw new IllegalArgumentException("app.settlement.exact.max-members must be at most " + ExactSettlementSolver.MAX_MEMBERS);
+        }
+        this.exactMaxMembers = exactMaxMembers;
+        this.exactTimeBudget = exactTimeBudget;
+
+        for (SettlementStrategy requested : SettlementStrategy.values()) {
+            Map<SettlementStrategy, Counter> byStrategy = new EnumMap<>(SettlementStrategy.class);
+            for (SettlementStrategy strategy : SettlementStrategy.values()) {
+                byStrategy.put(strategy, Counter.builder("debts.simplify.plans")
+                        .description("Settlement plans by requested strategy and the strategy that produced them")
+                        .tag("requested", requested.name())
+                        .tag("strategy", strategy.name())
+                        .register(meterRegistry));
+            }
+            plans.put(requested, byStrategy);
+        }
+    }
+
+    /**
+     * Computes the transfers that settle the given net positions.
+     *
+     * @param netBalances Net balance per user ID; positive when the user is owed money.
+     * @param requested   The strategy configured for the group, null for GREEDY.
+     * @return The transfers and the strategy that produced them.
+     */
+    public DebtPlan plan(Map<Long, BigDecimal> netBalances, SettlementStrategy requested) {
+        if (requested == null) {
+            requested = SettlementStrategy.GREEDY;
+        }
+
+        long[] userIds = new long[netBalances.size()];
+        long[] netCents = new long[netBalances.size()];
+        int i = 0;
+        for (Map.Entry<Long, BigDecimal> entry : netBalances.entrySet()) {
+            userIds[i] = entry.getKey();
+            netCents[i] = MoneyUtils.toCents(entry.getValue());
+            i++;
+        }
+
+        SettlementStrategy strategy = SettlementStrategy.GREEDY;
+        SettlementPlan plan = null;
+        if (requested == SettlementStrategy.EXACT) {
+            plan = ExactSettlementSolver.solve(netCents, exactMaxMembers, exactTimeBudget.toNanos());
+            if (plan != null) {
+                strategy = SettlementStrategy.EXACT;
+            }
+        }
+        if (plan == null) {
+            plan = SettlementEngine.settle(netCents);
+        }
+
+        plans.get(requested).get(strategy).increment();
+        return new DebtPlan(requested, strategy, plan.toTransactions(userIds));
+    }
+}
@@ -0,0 +1,25 @@
+package org.Smart.ExpenseSplitter.type;
+
+import org.springframework.http.MediaType;
+
+public enum ExpenseImportFormat {
+    NDJSON, CSV;
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    public String contentType() {
+        return this == CSV ? CSV_VALUE : NDJSON_VALUE;
+    }
+
+    public static ExpenseImportFormat fromContentType(String contentType) {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(CSV_VALUE))) {
+            return CSV;
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(NDJSON_VALUE))) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unsupported import format: " + contentType);
+    }
+}
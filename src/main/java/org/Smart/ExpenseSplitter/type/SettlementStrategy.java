@@ -0,0 +1,8 @@
+package org.Smart.ExpenseSplitter.type;
+
+public enum SettlementStrategy {
+    // Largest creditor matched with the smallest debtor, fast at any group size
+    GREEDY,
+    // Fewest possible transfers, for small groups within the time budget
+    EXACT
+}
@@ -0,0 +1,5 @@
+package org.Smart.ExpenseSplitter.type;
+
+public enum SplitType {
+    EQUAL, EXACT, PERCENTAGE, SHARES
+}
@@ -0,0 +1,66 @@
+package org.Smart.ExpenseSplitter.util;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Scalar fields and associations requested through the {@code fields} and {@code expand} query parameters.
+ * Associations that are not expanded are neither loaded nor serialized; the ID is always returned.
+ * A missing parameter keeps the full representation, so clients that send neither see no change,
+ * while an empty {@code expand} returns no association at all.
+ * A nested association such as {@code group.users} also expands its parent.
+ *
+ * @param fields     the scalar fields to return, or null for all of them
+ * @param expansions the associations to return, or null for all of them
+ */
+public record FieldSelection(Set<String> fields, Set<String> expansions) {
+
+    public static final FieldSelection ALL = new FieldSelection(null, null);
+
+    /**
+     * Parses the query parameters of a read endpoint.
+     *
+     * @param fields          comma-separated scalar fields, or null
+     * @param expand          comma-separated associations, or null
+     * @param knownFields     the scalar fields the representation has
+     * @param knownExpansions the associations the representation has
+     * @throws IllegalArgumentException if a name is not part of the representation
+     */
+    public static FieldSelection parse(String fields, String expand, Set<String> knownFields, Set<String> knownExpansions) {
+        return new FieldSelection(names(fields, knownFields, "field"), names(expand, knownExpansions, "expansion"));
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    public boolean expands(String association) {
+        return expansions == null || expansions.contains(association);
+    }
+
+    // The value of a scalar field when it is requested, otherwise null so it is left out of the response
+    public <T> T field(String name, Supplier<T> value) {
+        return includes(name) ? value.get() : null;
+    }
+
+    private static Set<String> names(String parameter, Set<String> known, String kind) {
+        if (parameter == null) return null;
+
+        Set<String> names = new HashSet<>();
+        for (String name : parameter.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) continue;
+            if (!known.contains(name)) {
+                throw new IllegalArgumentException("Unknown " + kind + " '" + name + "', expected one of " + known);
+            }
+
+            names.add(name);
+            // A nested association needs its parent
+            for (int dot = name.indexOf('.'); dot > 0; dot = name.indexOf('.', dot + 1)) {
+                names.add(name.substring(0, dot));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,70 @@
+package org.Smart.ExpenseSplitter.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Position in a listing ordered by (created_at, id...), exchanged with clients as an opaque token.
+ *
+ * @param createdAt creation time of the last row returned
+ * @param keys      the ID columns of the last row returned, in sort order
+ */
+public record KeysetCursor(LocalDateTime createdAt, List<Long> keys) {
+
+    // Sorts before every stored row
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /**
+     * Cursor positioned before the first row, used when the client sends no token.
+     *
+     * @param keyCount number of ID columns in the sort order
+     */
+    public static KeysetCursor start(int keyCount) {
+        return new KeysetCursor(ORIGIN, Collections.nCopies(keyCount, 0L));
+    }
+
+    public static KeysetCursor of(LocalDateTime createdAt, Long... keys) {
+        return new KeysetCursor(createdAt, List.of(keys));
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + keys.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by {@link #encode()}.
+     *
+     * @param token    the token sent by the client, or null for the first page
+     * @param keyCount number of ID columns expected in the token
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static KeysetCursor decode(String token, int keyCount) {
+        if (token == null || token.isBlank()) {
+            return start(keyCount);
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            List<Long> keys = Arrays.stream(parts[1].split(",")).map(Long::valueOf).toList();
+            if (keys.size() != keyCount) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new KeysetCursor(LocalDateTime.parse(parts[0]), keys);
+        } catch (DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public Long key(int index) {
+        return keys.get(index);
+    }
+}
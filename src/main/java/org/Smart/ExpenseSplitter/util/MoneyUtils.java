@@ -0,0 +1,18 @@
+package org.Smart.ExpenseSplitter.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class MoneyUtils {
+
+    // Monetary amounts are stored with two decimal places
+    public static final int SCALE = 2;
+
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+}
@@ -0,0 +1,18 @@
+package org.Smart.ExpenseSplitter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Runs against an in-memory H2 in MySQL mode instead of the MySQL server of application.properties
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:application;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+class SmartExpenseSplitterApplicationTests {
+
+	@Test
+	void contextLoads() {
+	}
+
+}
@@ -0,0 +1,82 @@
+package org.Smart.ExpenseSplitter.config;
+
+import jakarta.persistence.EntityManager;
+import org.Smart.ExpenseSplitter.entity.UserEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:id-generators;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(IdGeneratorInitializer.class)
+// The generator reads id_generators in its own transaction, so the seeded values must be committed
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdGeneratorInitializerTest {
+
+    private static final int EXISTING_USERS = 120;
+
+    @Autowired
+    private IdGeneratorInitializer initializer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void insertsAfterExistingRowsWithoutCollisions() {
+        // Rows written before the generators existed, with IDs the generator has not handed out
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (long id = 1; id <= EXISTING_USERS; id++) {
+            jdbcTemplate.update("insert into users (id, username, email, password, created_at) values (?, ?, ?, ?, ?)",
+                    id, "legacy" + id, "legacy" + id + "@example.com", "secret", now);
+        }
+
+        initializer.initialize();
+        assertEquals(EXISTING_USERS + IdGeneratorInitializer.ALLOCATION_SIZE,
+                jdbcTemplate.queryForObject("select next_id from id_generators where name = 'users'", Long.class));
+
+        // More than a whole pooled block, every ID must lie past the existing rows
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 0; i <= IdGeneratorInitializer.ALLOCATION_SIZE; i++) {
+                UserEntity user = new UserEntity();
+                user.setUsername("new" + i);
+                user.setEmail("new" + i + "@example.com");
+                user.setPassword("secret");
+                entityManager.persist(user);
+                assertTrue(user.getId() > EXISTING_USERS, "ID " + user.getId() + " collides with an existing row");
+            }
+            entityManager.flush();
+        });
+    }
+
+    @Test
+    void neverMovesAGeneratorBack() {
+        jdbcTemplate.update("update id_generators set next_id = 10000 where name = 'groups'");
+
+        initializer.initialize();
+
+        assertEquals(10000L, jdbcTemplate.queryForObject("select next_id from id_generators where name = 'groups'", Long.class));
+    }
+}
@@ -0,0 +1,99 @@
+package org.Smart.ExpenseSplitter.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExactSettlementSolverTest {
+
+    private static final long NO_BUDGET = Long.MAX_VALUE / 2;
+
+    @Test
+    void settlesZeroSumSubsetsSeparately() {
+        long[] netCents = {1000, 500, -1000, -500};
+
+        assertEquals(3, SettlementEngine.settle(netCents).size());
+        assertEquals(2, ExactSettlementSolver.solve(netCents, 20, NO_BUDGET).size());
+    }
+
+    @Test
+    void needsFewerTransfersThanGreedyOnGroupsWithCommonAmounts() {
+        // The groups of SettlementSolverBenchmark
+        long[] amounts = {500, 1000, 1500, 2000, 2500, 5000};
+
+        for (int members : new int[]{6, 10, 14, 18, 20}) {
+            SplittableRandom random = new SplittableRandom(42);
+            long[] netCents = new long[members];
+            for (int i = 0; i < members * 2; i++) {
+                int from = random.nextInt(members);
+                int to = random.nextInt(members);
+                if (from == to) continue;
+
+                long amount = amounts[random.nextInt(amounts.length)];
+                netCents[from] -= amount;
+                netCents[to] += amount;
+            }
+
+            assertTrue(ExactSettlementSolver.solve(netCents, members, NO_BUDGET).size()
+                    < SettlementEngine.settle(netCents).size());
+        }
+    }
+
+    @Test
+    void settlesEveryPositionWithNoMoreTransfersThanGreedy() {
+        Random random = new Random(5);
+
+        for (int round = 0; round < 2000; round++) {
+            int members = 1 + random.nextInt(14);
+            long[] netCents = new long[members];
+            long sum = 0;
+            for (int i = 0; i < members - 1; i++) {
+                netCents[i] = (random.nextInt(9) - 4) * (random.nextBoolean() ? 500 : 1);
+                sum += netCents[i];
+            }
+            netCents[members - 1] = -sum;
+
+            SettlementPlan plan = ExactSettlementSolver.solve(netCents, 20, NO_BUDGET);
+            long[] remaining = netCents.clone();
+            for (int t = 0; t < plan.size(); t++) {
+                assertTrue(plan.amounts()[t] > 0);
+                remaining[plan.from()[t]] += plan.amounts()[t];
+                remaining[plan.to()[t]] -= plan.amounts()[t];
+            }
+
+            for (long position : remaining) {
+                assertEquals(0, position);
+            }
+            assertTrue(plan.size() <= SettlementEngine.settle(netCents).size());
+        }
+    }
+
+    @Test
+    void givesUpBeyondItsLimits() {
+        Random random = new Random(9);
+        long[] netCents = new long[18];
+        long sum = 0;
+        for (int i = 0; i < netCents.length - 1; i++) {
+            netCents[i] = 1 + random.nextInt(1_000_000) * (i % 2 == 0 ? 1L : -1L);
+            sum += netCents[i];
+        }
+        netCents[netCents.length - 1] = -sum;
+
+        assertNull(ExactSettlementSolver.solve(netCents, 10, NO_BUDGET));
+        assertNull(ExactSettlementSolver.solve(netCents, 20, 0));
+    }
+
+    @Test
+    void neverSearchesMoreThanMaxMembers() {
+        long[] netCents = new long[ExactSettlementSolver.MAX_MEMBERS + 2];
+        for (int i = 0; i < netCents.length - 1; i++) {
+            netCents[i] = i + 1;
+        }
+        netCents[netCents.length - 1] = -(long) netCents.length * (netCents.length - 1) / 2;
+
+        assertNull(ExactSettlementSolver.solve(netCents, Integer.MAX_VALUE, NO_BUDGET));
+    }
+}
@@ -0,0 +1,85 @@
+package org.Smart.ExpenseSplitter.handler;
+
+import org.Smart.ExpenseSplitter.util.MoneyUtils;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SettlementEngineTest {
+
+    @Test
+    void matchesPriorityQueueSettlement() {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 500; round++) {
+            int members = 1 + random.nextInt(round < 450 ? 50 : 5000);
+            // Small amount ranges produce many ties between creditors and debtors
+            int range = random.nextBoolean() ? 5 : 100_000;
+
+            Map<Long, BigDecimal> netBalances = new HashMap<>();
+            for (int i = 0; i < members; i++) {
+                long from = 1L + random.nextInt(members);
+                long to = 1L + random.nextInt(members);
+                if (from == to) continue;
+
+                BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(range), 2);
+                netBalances.merge(from, amount.negate(), BigDecimal::add);
+                netBalances.merge(to, amount, BigDecimal::add);
+            }
+
+            long[] userIds = new long[netBalances.size()];
+            long[] netCents = new long[netBalances.size()];
+            int i = 0;
+            for (Map.Entry<Long, BigDecimal> entry : netBalances.entrySet()) {
+                userIds[i] = entry.getKey();
+                netCents[i] = MoneyUtils.toCents(entry.getValue());
+                i++;
+            }
+
+            List<Transaction> expected = queueSettlement(netBalances);
+            List<Transaction> actual = SettlementEngine.settle(netCents).toTransactions(userIds);
+
+            assertEquals(expected.size(), actual.size());
+            for (int t = 0; t < expected.size(); t++) {
+                assertEquals(expected.get(t).getFromUser(), actual.get(t).getFromUser());
+                assertEquals(expected.get(t).getToUser(), actual.get(t).getToUser());
+                assertEquals(0, expected.get(t).getAmount().compareTo(actual.get(t).getAmount()));
+            }
+        }
+    }
+
+    // The BigDecimal / PriorityQueue settlement the engine replaced
+    private static List<Transaction> queueSettlement(Map<Long, BigDecimal> netBalances) {
+        List<Transaction> transactions = new ArrayList<>();
+        PriorityQueue<UserBalance> creditors = new PriorityQueue<>(Comparator.comparing(UserBalance::getBalance).reversed());
+        PriorityQueue<UserBalance> debtors = new PriorityQueue<>(Comparator.comparing(UserBalance::getBalance));
+
+        for (Map.Entry<Long, BigDecimal> entry : netBalances.entrySet()) {
+            if (entry.getValue().signum() > 0) {
+                creditors.add(new UserBalance(entry.getKey(), entry.getValue()));
+            } else if (entry.getValue().signum() < 0) {
+                debtors.add(new UserBalance(entry.getKey(), entry.getValue().abs()));
+            }
+        }
+
+        while (!creditors.isEmpty() && !debtors.isEmpty()) {
+            UserBalance creditor = creditors.poll();
+            UserBalance debtor = debtors.poll();
+
+            BigDecimal amount = creditor.getBalance().min(debtor.getBalance());
+            transactions.add(new Transaction(debtor.getUserId(), creditor.getUserId(), amount));
+
+            if (creditor.getBalance().compareTo(amount) > 0) {
+                creditors.add(new UserBalance(creditor.getUserId(), creditor.getBalance().subtract(amount)));
+            }
+            if (debtor.getBalance().compareTo(amount) > 0) {
+                debtors.add(new UserBalance(debtor.getUserId(), debtor.getBalance().subtract(amount)));
+            }
+        }
+
+        return transactions;
+    }
+}
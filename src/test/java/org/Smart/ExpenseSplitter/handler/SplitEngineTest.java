@@ -0,0 +1,61 @@
+package org.Smart.ExpenseSplitter.handler;
+
+import org.Smart.ExpenseSplitter.type.SplitType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SplitEngineTest {
+
+    @Test
+    void givesLeftoverCentsToTheFirstParticipants() {
+        assertArrayEquals(new long[]{334, 333, 333}, SplitEngine.split(1000, SplitType.EQUAL, 3, null));
+        assertArrayEquals(new long[]{1, 1, 0, 0}, SplitEngine.split(2, SplitType.EQUAL, 4, null));
+    }
+
+    @Test
+    void givesLeftoverCentsToTheLargestRemainders() {
+        assertArrayEquals(new long[]{333, 333, 334},
+                SplitEngine.split(1000, SplitType.PERCENTAGE, 3, new long[]{3333, 3333, 3334}));
+        assertArrayEquals(new long[]{15, 29, 14, 43},
+                SplitEngine.split(101, SplitType.SHARES, 4, new long[]{100, 200, 100, 300}));
+    }
+
+    @Test
+    void weightedSharesAddUpAndStayWithinOneCent() {
+        Random random = new Random(11);
+
+        for (int round = 0; round < 10_000; round++) {
+            int participants = 1 + random.nextInt(round < 9_990 ? 50 : 5000);
+            long total = random.nextInt(10_000_000);
+            long[] weights = new long[participants];
+            for (int i = 0; i < participants; i++) {
+                weights[i] = random.nextInt(random.nextBoolean() ? 3 : 100_000);
+            }
+            long weightSum = Arrays.stream(weights).sum();
+            if (weightSum == 0) continue;
+
+            long[] shares = SplitEngine.split(total, SplitType.SHARES, participants, weights);
+
+            assertEquals(total, Arrays.stream(shares).sum());
+            for (int i = 0; i < participants; i++) {
+                assertTrue(Math.abs(shares[i] * weightSum - total * weights[i]) < weightSum);
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidSplits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SplitEngine.split(1000, SplitType.EXACT, 2, new long[]{500, 400}));
+        assertThrows(IllegalArgumentException.class,
+                () -> SplitEngine.split(1000, SplitType.PERCENTAGE, 2, new long[]{5000, 4000}));
+        assertThrows(IllegalArgumentException.class,
+                () -> SplitEngine.split(1000, SplitType.SHARES, 2, new long[]{0, 0}));
+        assertThrows(IllegalArgumentException.class,
+                () -> SplitEngine.split(1000, SplitType.SHARES, 2, new long[]{1}));
+    }
+}
@@ -0,0 +1,93 @@
+package org.Smart.ExpenseSplitter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.Smart.ExpenseSplitter.dto.expense.ExpenseRequestDTO;
+import org.Smart.ExpenseSplitter.entity.GroupEntity;
+import org.Smart.ExpenseSplitter.entity.UserEntity;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The dirty group and balance summary upserts need H2's MySQL mode
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:expense-batching;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ExpenseService.class, BalanceService.class, GroupService.class, AuthService.class, GroupMembershipIndex.class,
+        DebtOptimizationScheduler.class, GroupWriteLock.class, LedgerService.class,
+        BalanceSummaryService.class, SettlementPlanner.class, SimpleMeterRegistry.class})
+class ExpenseServiceBatchingTest {
+
+    private static final int PARTICIPANTS = 100;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void addExpenseFlushesInBatches() throws Exception {
+        List<UserEntity> users = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            UserEntity user = new UserEntity();
+            user.setUsername("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setPassword("secret");
+            entityManager.persist(user);
+            users.add(user);
+        }
+
+        GroupEntity group = new GroupEntity();
+        group.setName("trip");
+        group.setOwner(users.get(0));
+        group.setMembers(new ArrayList<>(users.subList(1, users.size())));
+        entityManager.persist(group);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        ExpenseRequestDTO request = new ExpenseRequestDTO();
+        request.setDescription("dinner");
+        request.setAmount(new BigDecimal("1000.00"));
+        request.setExpenseType("FOOD");
+        request.setPayerId(users.get(0).getId());
+        request.setParticipantIds(users.stream().map(UserEntity::getId).toList());
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        expenseService.addExpense(group.getId(), request);
+        entityManager.flush();
+
+        // Without batching every expense_users row, net position and balance would be its own statement
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements < 30, "expected a bounded number of statements but got " + statements);
+
+        statistics.clear();
+
+        balanceService.optimizeDebts(group.getId());
+        entityManager.flush();
+
+        // Every participant now owes the payer, without batching each balance would be its own insert
+        statements = statistics.getPrepareStatementCount();
+        assertTrue(statements < 10, "expected a bounded number of statements to optimize but got " + statements);
+    }
+}
@@ -1,13 +0,0 @@
-package org.example.smartexpensesplitter;
-
-import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
-
-@SpringBootTest
-class SmartExpenseSplitterApplicationTests {
-
-	@Test
-	void contextLoads() {
-	}
-
-}